@@ -1,12 +1,14 @@
 package jump61;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 import static jump61.Side.*;
 import static org.junit.Assert.*;
 import static jump61.AI.*;
 
-/** Unit tests of Boards.
+/** Unit tests of automated players and their search.
  *  @author Ethan Ikegami
  */
 
@@ -33,4 +35,467 @@ public class AITest {
 
 
     }
+
+    @Test
+    public void arenaTest() {
+        Random rand = new Random(16);
+        SearchArena arena = SearchArena.get();
+        assertSame(arena, SearchArena.get());
+        for (int size : new int[] { 6, 10 }) {
+            Board root = new Board(size);
+            for (int k = 0; k < 20; k += 1) {
+                int n = rand.nextInt(root.numSquares());
+                if (root.isLegal(root.whoseMove(), n)) {
+                    root.addSpot(root.whoseMove(), n);
+                }
+            }
+            arena.reset(root);
+            SearchBoard first = arena.board(0), second = arena.board(1);
+            assertEquals(root.toString(), first.toString());
+            MoveList moves = arena.moves(0);
+            moves.generate(first, first.whoseMove());
+            int legal = 0;
+            for (int n = 0; n < root.numSquares(); n += 1) {
+                if (root.isLegal(root.whoseMove(), n)) {
+                    assertEquals(n, moves.get(legal));
+                    legal += 1;
+                }
+            }
+            assertEquals(legal, moves.size());
+            for (int k = 0; k < moves.size(); k += 1) {
+                Board expected = new Board(root);
+                expected.addSpot(expected.whoseMove(), moves.get(k));
+                SearchBoard child =
+                    arena.child(0, first.whoseMove(), moves.get(k));
+                assertSame(second, child);
+                assertEquals(new Board(expected).getHash(),
+                             new Board(child).getHash());
+                assertEquals(root.toString(), first.toString());
+            }
+            arena.reset(root);
+            assertSame(first, arena.board(0));
+            assertSame(moves, arena.moves(0));
+            assertEquals(size <= BitBoard.MAX_SIZE,
+                         first instanceof BitBoard);
+        }
+    }
+
+    @Test
+    public void transpositionTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        assertEquals(1 << 16, table.capacity());
+        Board B = new Board(6);
+        B.addSpot(RED, 1, 1);
+        long key = B.getHash();
+        assertEquals(0, table.probe(key));
+        table.store(key, 5, TranspositionTable.LOWER, -1234, 35);
+        long data = table.probe(key);
+        assertEquals(5, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        assertEquals(-1234, TranspositionTable.score(data));
+        assertEquals(35, TranspositionTable.move(data));
+        assertEquals(0, table.probe(key ^ 1L << 40));
+
+        long other = key ^ 1L << 62;
+        table.store(other, 2, TranspositionTable.EXACT, 7, -1);
+        assertEquals(5, TranspositionTable.depth(table.probe(key)));
+        assertEquals(-1, TranspositionTable.move(table.probe(other)));
+        table.store(key, 3, TranspositionTable.UPPER, 9, -1);
+        assertEquals(35, TranspositionTable.move(table.probe(key)));
+        assertEquals(9, TranspositionTable.score(table.probe(key)));
+        table.newSearch();
+        table.store(other, 1, TranspositionTable.EXACT, 8, 4);
+        assertEquals(8, TranspositionTable.score(table.probe(other)));
+        table.store(key ^ 1L << 61, 0, TranspositionTable.EXACT, 0, 0);
+        assertEquals(0, table.probe(key));
+        table.clear();
+        assertEquals(0, table.probe(other));
+    }
+
+    @Test
+    public void searchTest() {
+        Board B = new Board(2);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 2, RED);
+        B.set(2, 1, 1, RED);
+        B.set(2, 2, 1, BLUE);
+        assertEquals(RED, B.whoseMove());
+        String before = B.toString();
+        Searcher searcher = new Searcher(new TranspositionTable(1));
+        int move = searcher.findMove(B, Long.MAX_VALUE, 4);
+        assertEquals(before, B.toString());
+        assertEquals(1, searcher.depth());
+        assertEquals(Searcher.WINNING_VALUE - 1, searcher.score());
+        B.addSpot(RED, move);
+        assertEquals(RED, B.getWinner());
+
+        Board C = new Board(6);
+        C.addSpot(RED, 3, 3);
+        move = searcher.findMove(C, System.nanoTime() - 1, 8);
+        assertEquals(1, searcher.depth());
+        assertTrue(C.isLegal(BLUE, move));
+        move = searcher.findMove(C, Long.MAX_VALUE, 3);
+        assertEquals(3, searcher.depth());
+        assertTrue(C.isLegal(BLUE, move));
+    }
+
+    @Test
+    public void wonSearchTest() {
+        Board B = new Board(2);
+        B.set(1, 1, 1, RED);
+        B.set(1, 2, 1, RED);
+        B.set(2, 1, 1, RED);
+        B.set(2, 2, 1, RED);
+        assertEquals(RED, B.getWinner());
+        Searcher searcher = new Searcher(new TranspositionTable(1));
+        assertEquals(-1, searcher.findMove(B, Long.MAX_VALUE, 4));
+        assertEquals(0, searcher.depth());
+
+        Board C = new Board(3);
+        C.addSpot(RED, 2, 2);
+        assertTrue(searcher.findMove(C, Long.MAX_VALUE, 2) >= 0);
+        assertEquals(-1, searcher.findMove(B, Long.MAX_VALUE, 4));
+        assertEquals(0, searcher.nodes());
+    }
+
+    @Test
+    public void parallelSearchTest() {
+        Searcher searcher = new Searcher(new TranspositionTable(1), 3);
+        assertEquals(3, searcher.threads());
+        Board B = new Board(2);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 2, RED);
+        B.set(2, 1, 1, RED);
+        B.set(2, 2, 1, BLUE);
+        B.addSpot(RED, searcher.findMove(B, Long.MAX_VALUE, 4));
+        assertEquals(RED, B.getWinner());
+
+        Board C = new Board(4);
+        for (int k = 0; k < 6; k += 1) {
+            C.addSpot(C.whoseMove(), k * 5 % 16);
+        }
+        String before = C.toString();
+        for (int depth = 2; depth <= 4; depth += 1) {
+            int move = searcher.findMove(C, Long.MAX_VALUE, depth);
+            assertEquals(depth, searcher.depth());
+            assertTrue(C.isLegal(C.whoseMove(), move));
+            assertTrue(searcher.nodes() > 0);
+        }
+        assertEquals(before, C.toString());
+        searcher.close();
+    }
+
+    @Test
+    public void moveOrderTest() {
+        MoveList moves = new MoveList();
+        for (int n = 0; n < 5; n += 1) {
+            moves.add(n);
+            moves.setScore(n, n % 2);
+        }
+        moves.sort();
+        int[] sorted = { 1, 3, 0, 2, 4 };
+        for (int k = 0; k < sorted.length; k += 1) {
+            assertEquals(sorted[k], moves.get(k));
+        }
+
+        Board B = new Board(4);
+        B.set(1, 1, 2, BLUE);
+        B.set(1, 2, 1, RED);
+        B.set(3, 3, 1, RED);
+        B.set(4, 4, 1, BLUE);
+        assertEquals(BLUE, B.whoseMove());
+        MoveOrder order = new MoveOrder();
+        order.newSearch(B.numSquares());
+        moves.generate(B, B.whoseMove());
+        order.order(B, moves, 0, 15);
+        assertEquals(15, moves.get(0));
+        assertEquals(0, moves.get(1));
+        order.cutoff(moves, 2, 0, 3);
+        int killer = moves.get(2);
+        order.cutoff(moves, 0, 0, 3);
+        assertEquals(2, order.cutoffs());
+        assertEquals(1, order.firstCutoffs());
+        moves.generate(B, B.whoseMove());
+        order.order(B, moves, 0, -1);
+        assertEquals(0, moves.get(0));
+        assertEquals(killer, moves.get(1));
+        order.order(B, moves, 1, -1);
+        assertEquals(0, moves.get(0));
+        assertEquals(killer, moves.get(1));
+
+        Searcher searcher = new Searcher(new TranspositionTable(1));
+        Board C = new Board(5);
+        for (int k = 0; k < 8; k += 1) {
+            C.addSpot(C.whoseMove(), k * 7 % 25);
+        }
+        searcher.findMove(C, Long.MAX_VALUE, 4);
+        assertTrue(searcher.cutoffs() > 0);
+        assertTrue(searcher.firstMoveCutoffRate() > 0.5);
+    }
+
+    @Test
+    public void evaluationTest() {
+        Random rand = new Random(21);
+        for (SearchBoard B : new SearchBoard[] {
+                new Board(7), new BitBoard(new Board(5)),
+                new Board(Topology.hex(4, 5)) }) {
+            Evaluation eval = new Evaluation();
+            B.setCellListener(eval);
+            assertSame(eval, B.cellListener());
+            int moves = 0;
+            while (B.getWinner() == null && moves < 200) {
+                int n = rand.nextInt(B.numSquares());
+                if (!B.isLegal(B.whoseMove(), n)) {
+                    continue;
+                }
+                if (moves % 3 == 0) {
+                    B.makeMove(B.whoseMove(), n);
+                    checkEvaluation(B, eval);
+                    B.unmakeMove();
+                    checkEvaluation(B, eval);
+                }
+                B.makeMove(B.whoseMove(), n);
+                moves += 1;
+                checkEvaluation(B, eval);
+                if (moves % 7 == 0) {
+                    B.unmakeMove();
+                    checkEvaluation(B, eval);
+                }
+            }
+            B.copy(new Board(4));
+            checkEvaluation(B, eval);
+            assertEquals(0, eval.value(RED));
+        }
+    }
+
+    /** Check that EVAL, which follows B, agrees with a fresh evaluation
+     *  of B. */
+    private void checkEvaluation(SearchBoard B, Evaluation eval) {
+        Evaluation fresh = new Evaluation();
+        fresh.reload(B);
+        for (Side side : new Side[] { RED, BLUE }) {
+            for (int t = Evaluation.SQUARES; t <= Evaluation.EDGES; t += 1) {
+                assertEquals(fresh.term(t, side), eval.term(t, side));
+            }
+            assertEquals(fresh.value(side), eval.value(side));
+        }
+        assertEquals(B.numOfSide(RED), eval.term(Evaluation.SQUARES, RED));
+    }
+
+    @Test
+    public void estimatorTest() {
+        Random rand = new Random(22);
+        CascadeEstimator approx = new CascadeEstimator();
+        CascadeEstimator exact = new CascadeEstimator();
+        exact.setExactLimit(1000);
+        CascadeEstimator small = new CascadeEstimator();
+        small.setExactLimit(2);
+        int cascades = 0;
+        for (int game = 0; game < 20; game += 1) {
+            Board B = new Board(game % 2 == 0 ? Topology.grid(6)
+                                : Topology.hex(5, 6));
+            while (B.getWinner() == null) {
+                int n = rand.nextInt(B.numSquares());
+                Side player = B.whoseMove();
+                if (!B.isLegal(player, n)) {
+                    continue;
+                }
+                String before = B.toString();
+                int guess = approx.estimate(B, player, n);
+                int squares = exact.estimate(B, player, n);
+                int spots = exact.spots();
+                assertTrue(exact.exact());
+                int partial = small.estimate(B, player, n);
+                assertEquals(before, B.toString());
+                Board C = new Board(B);
+                C.addSpot(player, n);
+                if (C.getWinner() == null) {
+                    assertTrue(guess <= squares);
+                    if (small.exact()) {
+                        assertEquals(squares, partial);
+                    } else {
+                        assertEquals(guess, partial);
+                    }
+                    int captured = 0, capturedSpots = 0;
+                    for (int k = 0; k < B.numSquares(); k += 1) {
+                        if (B.get(k).getSide() == player.opposite()
+                            && C.get(k).getSide() == player) {
+                            captured += 1;
+                            capturedSpots += B.get(k).getSpots();
+                        }
+                    }
+                    assertEquals(captured, squares);
+                    assertEquals(capturedSpots, spots);
+                    if (C.lastJumps() > 0) {
+                        cascades += 1;
+                    }
+                } else {
+                    assertEquals(B.numOfSide(player.opposite()), squares);
+                }
+                B.addSpot(player, n);
+            }
+        }
+        assertTrue(cascades > 100);
+    }
+
+    @Test
+    public void cascadeCacheTest() {
+        Random rand = new Random(23);
+        CascadeCache cache = new CascadeCache(64, 1);
+        assertEquals(64, cache.capacity());
+        Board B = new Board(12);
+        Board C = new Board(12);
+        int replays = 0;
+        while (B.getWinner() == null) {
+            int n = rand.nextInt(B.numSquares());
+            Side player = B.whoseMove();
+            if (!B.isLegal(player, n)) {
+                continue;
+            }
+            String before = B.toString();
+            long hits = cache.hits();
+            cache.makeMove(B, player, n);
+            C.makeMove(player, n);
+            String after = C.toString();
+            assertEquals(after, B.toString());
+            assertEquals(C.getHash(), B.getHash());
+            assertEquals(C.getSpots(), B.getSpots());
+            assertEquals(C.getRed(), B.getRed());
+            B.unmakeMove();
+            C.unmakeMove();
+            assertEquals(before, B.toString());
+            cache.makeMove(B, player, n);
+            assertEquals(after, B.toString());
+            if (cache.hits() > hits) {
+                replays += 1;
+            }
+            B.unmakeMove();
+            assertEquals(before, B.toString());
+            B.addSpot(player, n);
+            C.addSpot(player, n);
+        }
+        assertTrue(replays > 20);
+        assertTrue(cache.misses() > 0);
+        cache.clear();
+        assertEquals(0, cache.hits());
+
+        SearchBoard D = new BitBoard(new Board(4));
+        cache.makeMove(D, RED, 0);
+        assertEquals(0, cache.hits() + cache.misses());
+        assertEquals(2, D.get(0).getSpots());
+    }
+
+    @Test
+    public void quiescenceTest() {
+        Board B = new Board(4);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, BLUE);
+        B.set(2, 2, 4, BLUE);
+        B.set(3, 3, 3, RED);
+        B.set(3, 4, 3, BLUE);
+        B.set(4, 4, 1, RED);
+        String before = B.toString();
+        TranspositionTable table = new TranspositionTable(1);
+        Searcher searcher = new Searcher(table);
+        searcher.setQuiescence(0, Searcher.QUIESCENCE_NODES);
+        int move = searcher.findMove(B, Long.MAX_VALUE, 2);
+        assertTrue(B.isLegal(B.whoseMove(), move));
+        assertEquals(0, searcher.quiescenceNodes());
+        long plain = searcher.nodes();
+
+        searcher.setQuiescence(Searcher.QUIESCENCE_PLIES,
+                               Searcher.QUIESCENCE_NODES);
+        table.clear();
+        move = searcher.findMove(B, Long.MAX_VALUE, 2);
+        assertEquals(before, B.toString());
+        assertTrue(B.isLegal(B.whoseMove(), move));
+        assertTrue(searcher.quiescenceNodes() > 0);
+        assertTrue(searcher.quiescenceDepth() > 0);
+        assertTrue(searcher.quiescenceDepth() <= Searcher.QUIESCENCE_PLIES);
+        assertTrue(searcher.nodes() > plain);
+
+        searcher.setQuiescence(2, Searcher.QUIESCENCE_NODES);
+        table.clear();
+        searcher.findMove(B, Long.MAX_VALUE, 2);
+        assertTrue(searcher.quiescenceDepth() <= 2);
+        searcher.setQuiescence(Searcher.QUIESCENCE_PLIES, 0);
+        table.clear();
+        searcher.findMove(B, Long.MAX_VALUE, 2);
+        assertEquals(0, searcher.quiescenceDepth());
+
+        try {
+            searcher.setQuiescence(Searcher.MAX_QUIESCENCE_PLIES + 1, 1);
+            fail("too many quiescence plies accepted");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void symmetryTest() {
+        Symmetry sym = new Symmetry();
+        Board B = new Board(5);
+        B.setCellListener(sym);
+        assertEquals(8, sym.symmetries());
+        MoveList moves = new MoveList();
+        moves.generate(B, RED);
+        sym.reduce(moves);
+        assertEquals(6, moves.size());
+        B.addSpot(RED, 1, 1);
+        assertEquals(2, sym.symmetries());
+        B.addSpot(BLUE, 2, 4);
+        assertEquals(1, sym.symmetries());
+        moves.generate(B, RED);
+        int all = moves.size();
+        sym.reduce(moves);
+        assertEquals(all, moves.size());
+
+        Symmetry other = new Symmetry();
+        SearchBoard C = new BitBoard(new Board(5));
+        C.setCellListener(other);
+        C.makeMove(RED, B.sqNum(1, 5));
+        C.makeMove(BLUE, B.sqNum(4, 4));
+        assertEquals(B.getHash() == C.getHash(), false);
+        assertEquals(sym.canonicalKey(), other.canonicalKey());
+        assertEquals(sym.toCanonical(B.sqNum(3, 3)),
+                     other.toCanonical(B.sqNum(3, 3)));
+        assertEquals(sym.toCanonical(B.sqNum(1, 2)),
+                     other.toCanonical(B.sqNum(2, 5)));
+        assertEquals(B.sqNum(1, 2),
+                     sym.fromCanonical(other.toCanonical(B.sqNum(2, 5))));
+        C.unmakeMove();
+        C.unmakeMove();
+        assertEquals(8, other.symmetries());
+
+        Symmetry hex = new Symmetry();
+        new Board(Topology.hex(3, 3)).setCellListener(hex);
+        assertEquals(1, hex.symmetries());
+    }
+
+    @Test
+    public void clockTest() {
+        SearchClock clock = new SearchClock();
+        Board B = new Board(6);
+        assertFalse(clock.limited());
+        assertEquals(Long.MAX_VALUE, clock.startMove(B));
+        clock.setLimits(0, 36);
+        assertEquals(18, SearchClock.movesLeft(B));
+        long start = System.nanoTime();
+        long deadline = clock.startMove(B);
+        assertTrue(deadline - start < 2_000_000_000L);
+        assertTrue(deadline - start > 1_500_000_000L);
+        clock.endMove();
+        assertTrue(clock.remaining() <= 36_000_000_000L);
+        clock.setLimits(0.5, 36);
+        assertTrue(clock.startMove(B) - start < 500_000_000L);
+        for (double bad : new double[] { Double.NaN,
+                                         Double.POSITIVE_INFINITY, -1 }) {
+            try {
+                clock.setLimits(bad, 0);
+                fail("bad move limit accepted");
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
 }
@@ -0,0 +1,490 @@
+package jump61;
+
+import java.util.Arrays;
+
+import static jump61.Side.*;
+
+/** A board of at most 8 x 8 squares for searches, kept in 64-bit planes,
+ *  one bit per square in row-major order: one plane each for the red and
+ *  blue squares and four holding the bits of every square's spot count.
+ *  A cascade is done a wave at a time, every over-full square of a wave
+ *  jumping at once, by adding shifted copies of the over-full plane to
+ *  the spot planes, so that its cost does not grow with the number of
+ *  squares involved.  Without a win, the result is the same as for
+ *  Board; with one, the winning position may differ, as the rules allow.
+ *
+ *  A BitBoard has only what a search needs (see SearchBoard): moves made
+ *  with makeMove or replayMove and taken back with unmakeMove, the
+ *  contents and counts of its squares, the winner, its critical squares
+ *  and the Zobrist key, which agrees with Board's.  Its cell listener is
+ *  told of the squares each move changes.  Board.searchCopy returns one
+ *  when the size allows; new Board(BITBOARD) makes a plain copy.
+ *  @author Ethan Ikegami
+ */
+final class BitBoard extends SearchBoard {
+
+    /** Largest size of a BitBoard. */
+    static final int MAX_SIZE = 8;
+
+    /** Return true iff an N x N board may be a BitBoard. */
+    static boolean fits(int N) {
+        return 2 <= N && N <= MAX_SIZE;
+    }
+
+    /** A BitBoard with the contents of BOARD, which must be a square
+     *  grid whose size fits. */
+    BitBoard(SearchBoard board) {
+        _stack = new long[INITIAL_DEPTH * FRAME];
+        copy(board);
+    }
+
+    @Override
+    void copy(SearchBoard board) {
+        relayout(board.topology());
+        if (board instanceof BitBoard) {
+            BitBoard bits = (BitBoard) board;
+            _red = bits._red;
+            _blue = bits._blue;
+            _p0 = bits._p0;
+            _p1 = bits._p1;
+            _p2 = bits._p2;
+            _p3 = bits._p3;
+            _hash = bits._hash;
+            _spots = bits._spots;
+        } else {
+            load(board);
+        }
+        _lastJumps = _lastWaves = 0;
+        _depth = 0;
+        if (_listener != null) {
+            _listener.reload(this);
+        }
+    }
+
+    /** Set my contents to those of BOARD, which has my layout. */
+    private void load(SearchBoard board) {
+        _red = _blue = _p0 = _p1 = _p2 = _p3 = 0;
+        _hash = 0;
+        _spots = 0;
+        for (int n = 0; n < _size * _size; n += 1) {
+            Square sq = board.get(n);
+            if (sq.getSpots() > MAX_SPOTS) {
+                throw new GameException("Too many spots for a BitBoard.");
+            }
+            long bit = 1L << n;
+            if (sq.getSide() == RED) {
+                _red |= bit;
+            } else if (sq.getSide() == BLUE) {
+                _blue |= bit;
+            }
+            putSpots(n, sq.getSpots());
+            _spots += sq.getSpots();
+            _hash ^= Board.key(n, cell(n));
+        }
+    }
+
+    @Override
+    Topology topology() {
+        return _topology;
+    }
+
+    @Override
+    int numSquares() {
+        return _size * _size;
+    }
+
+    @Override
+    Square get(int n) {
+        return Square.square(side(n), spots(n));
+    }
+
+    @Override
+    Side whoseMove() {
+        return ((_spots + numSquares()) & 1) == 0 ? RED : BLUE;
+    }
+
+    @Override
+    Side getWinner() {
+        if (_red == _masks[ALL]) {
+            return RED;
+        } else if (_blue == _masks[ALL]) {
+            return BLUE;
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    boolean isLegal(Side player, int n) {
+        long other = player == RED ? _blue : _red;
+        return isLegal(player) && (other & (1L << n)) == 0;
+    }
+
+    @Override
+    int numOfSide(Side side) {
+        return Long.bitCount(plane(side));
+    }
+
+    @Override
+    long getHash() {
+        return _hash;
+    }
+
+    @Override
+    int lastJumps() {
+        return _lastJumps;
+    }
+
+    /** Return the number of waves of jumps caused by the last move. */
+    int lastWaves() {
+        return _lastWaves;
+    }
+
+    @Override
+    void makeMove(Side player, int n) {
+        push();
+        _spots += 1;
+        place(n, spots(n) + 1, player);
+    }
+
+    @Override
+    void replayMove(int[] squares, byte[] cells) {
+        push();
+        CellListener listener = _listener;
+        for (int k = 0; k < squares.length; k += 1) {
+            int n = squares[k];
+            long bit = 1L << n;
+            byte old = cell(n), cell = cells[k];
+            Side side = Board.sideOf(cell);
+            _red = side == RED ? _red | bit : _red & ~bit;
+            _blue = side == BLUE ? _blue | bit : _blue & ~bit;
+            _spots += Board.spotsOf(cell) - Board.spotsOf(old);
+            putSpots(n, Board.spotsOf(cell));
+            _hash ^= Board.key(n, old) ^ Board.key(n, cell);
+            if (listener != null) {
+                listener.cellChanged(n, old, cell);
+            }
+        }
+        _lastJumps = _lastWaves = 0;
+    }
+
+    @Override
+    void unmakeMove() {
+        assert _depth > 0;
+        pop();
+    }
+
+    @Override
+    boolean isCritical(int n) {
+        return (critical() & (1L << n)) != 0;
+    }
+
+    @Override
+    int numCritical(Side side) {
+        return Long.bitCount(critical() & plane(side));
+    }
+
+    @Override
+    int critical(Side side, int k) {
+        long squares = critical() & plane(side);
+        for (; k > 0; k -= 1) {
+            squares &= squares - 1;
+        }
+        return Long.numberOfTrailingZeros(squares);
+    }
+
+    @Override
+    void setCellListener(CellListener listener) {
+        _listener = listener;
+        if (listener != null) {
+            listener.reload(this);
+        }
+    }
+
+    @Override
+    CellListener cellListener() {
+        return _listener;
+    }
+
+    @Override
+    public String toString() {
+        return new Board(this).toString();
+    }
+
+    /** Make TOPOLOGY, which must be a square grid that fits, my layout. */
+    private void relayout(Topology topology) {
+        if (!topology.isSquareGrid()) {
+            throw new GameException("A BitBoard must be a square grid.");
+        } else if (!fits(topology.size())) {
+            throw new GameException("Board too large for a BitBoard.");
+        }
+        _topology = topology;
+        _size = topology.size();
+        _masks = MASKS[_size];
+    }
+
+    /** Give square #N NUM spots and color PLAYER, then do all jumping,
+     *  keeping my key up to date. */
+    private void place(int n, int num, Side player) {
+        long red0 = _red, blue0 = _blue,
+            p00 = _p0, p10 = _p1, p20 = _p2, p30 = _p3;
+        long bit = 1L << n;
+        if (player == RED) {
+            _red |= bit;
+            _blue &= ~bit;
+        } else {
+            _blue |= bit;
+            _red &= ~bit;
+        }
+        putSpots(n, num);
+        _lastJumps = _lastWaves = 0;
+        jump(player);
+        long changed = (_red ^ red0) | (_blue ^ blue0) | (_p0 ^ p00)
+            | (_p1 ^ p10) | (_p2 ^ p20) | (_p3 ^ p30);
+        CellListener listener = _listener;
+        for (; changed != 0; changed &= changed - 1) {
+            int k = Long.numberOfTrailingZeros(changed);
+            byte old = cell(k, red0, blue0, p00, p10, p20, p30),
+                cell = cell(k);
+            _hash ^= Board.key(k, old) ^ Board.key(k, cell);
+            if (listener != null) {
+                listener.cellChanged(k, old, cell);
+            }
+        }
+    }
+
+    /** Jump every over-full square at once, repeatedly, giving squares
+     *  that receive spots to PLAYER, until nothing is over-full or
+     *  PLAYER owns every square. */
+    private void jump(Side player) {
+        long[] m = _masks;
+        long all = m[ALL];
+        for (long fire = overfull(); fire != 0; fire = overfull()) {
+            _lastJumps += Long.bitCount(fire);
+            _lastWaves += 1;
+            add(fire & m[LESS0], fire & m[LESS1], fire & m[LESS2],
+                fire & m[LESS3]);
+            long west = (fire << 1) & m[HAS_WEST],
+                east = (fire >>> 1) & m[HAS_EAST],
+                north = (fire << _size) & all,
+                south = fire >>> _size;
+            long s1 = west ^ east, c1 = west & east,
+                s2 = north ^ south, c2 = north & south,
+                c3 = s1 & s2;
+            add(s1 ^ s2, c1 ^ c2 ^ c3, (c1 & c2) | (c1 & c3) | (c2 & c3), 0);
+            long received = west | east | north | south;
+            if (player == RED) {
+                _red |= received;
+                _blue &= ~received;
+                if (_red == all) {
+                    break;
+                }
+            } else {
+                _blue |= received;
+                _red &= ~received;
+                if (_blue == all) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Add the 4-bit numbers whose bits are in A0 (least significant)
+     *  through A3 to the spot counts, square by square, modulo 16. */
+    private void add(long a0, long a1, long a2, long a3) {
+        long carry = _p0 & a0;
+        _p0 ^= a0;
+        long sum = _p1 ^ a1;
+        long next = (_p1 & a1) | (sum & carry);
+        _p1 = sum ^ carry;
+        carry = next;
+        sum = _p2 ^ a2;
+        next = (_p2 & a2) | (sum & carry);
+        _p2 = sum ^ carry;
+        _p3 ^= a3 ^ next;
+    }
+
+    /** Return the plane of over-full squares. */
+    private long overfull() {
+        long[] m = _masks;
+        long atLeast3 = _p3 | _p2 | (_p1 & _p0),
+            atLeast4 = _p3 | _p2,
+            atLeast5 = _p3 | (_p2 & (_p1 | _p0));
+        return (m[DEGREE2] & atLeast3) | (m[DEGREE3] & atLeast4)
+            | (m[DEGREE4] & atLeast5);
+    }
+
+    /** Return the plane of critical squares. */
+    private long critical() {
+        long[] m = _masks;
+        long low = ~_p3 & ~_p2;
+        return (m[DEGREE2] & low & _p1 & ~_p0)
+            | (m[DEGREE3] & low & _p1 & _p0)
+            | (m[DEGREE4] & ~_p3 & _p2 & ~_p1 & ~_p0);
+    }
+
+    /** Return the plane of squares of color SIDE. */
+    private long plane(Side side) {
+        switch (side) {
+        case RED:
+            return _red;
+        case BLUE:
+            return _blue;
+        default:
+            return _masks[ALL] & ~_red & ~_blue;
+        }
+    }
+
+    /** Return the color of square #N. */
+    private Side side(int n) {
+        if ((_red >>> n & 1) != 0) {
+            return RED;
+        } else if ((_blue >>> n & 1) != 0) {
+            return BLUE;
+        } else {
+            return WHITE;
+        }
+    }
+
+    /** Return the number of spots on square #N. */
+    private int spots(int n) {
+        return (int) ((_p0 >>> n & 1) | (_p1 >>> n & 1) << 1
+                      | (_p2 >>> n & 1) << 2 | (_p3 >>> n & 1) << 3);
+    }
+
+    /** Set the number of spots on square #N to NUM. */
+    private void putSpots(int n, int num) {
+        long bit = 1L << n;
+        _p0 = (num & 1) != 0 ? _p0 | bit : _p0 & ~bit;
+        _p1 = (num & 2) != 0 ? _p1 | bit : _p1 & ~bit;
+        _p2 = (num & 4) != 0 ? _p2 | bit : _p2 & ~bit;
+        _p3 = (num & 8) != 0 ? _p3 | bit : _p3 & ~bit;
+    }
+
+    /** Return square #N packed as by Board.pack. */
+    private byte cell(int n) {
+        return Board.pack(side(n), spots(n));
+    }
+
+    /** Return square #N packed as by Board.pack, as it is in the planes
+     *  RED, BLUE and P0 - P3. */
+    private static byte cell(int n, long red, long blue,
+                             long p0, long p1, long p2, long p3) {
+        Side side = (red >>> n & 1) != 0 ? RED
+            : (blue >>> n & 1) != 0 ? BLUE : WHITE;
+        int spots = (int) ((p0 >>> n & 1) | (p1 >>> n & 1) << 1
+                           | (p2 >>> n & 1) << 2 | (p3 >>> n & 1) << 3);
+        return Board.pack(side, spots);
+    }
+
+    /** Save my contents on my undo stack. */
+    private void push() {
+        if ((_depth + 1) * FRAME > _stack.length) {
+            _stack = Arrays.copyOf(_stack, 2 * _stack.length);
+        }
+        int f = _depth * FRAME;
+        _stack[f] = _red;
+        _stack[f + 1] = _blue;
+        _stack[f + 2] = _p0;
+        _stack[f + 3] = _p1;
+        _stack[f + 4] = _p2;
+        _stack[f + 5] = _p3;
+        _stack[f + 6] = _hash;
+        _stack[f + 7] = _spots;
+        _depth += 1;
+    }
+
+    /** Restore the contents last saved by push, telling any cell
+     *  listener of each square that changes. */
+    private void pop() {
+        _depth -= 1;
+        int f = _depth * FRAME;
+        CellListener listener = _listener;
+        if (listener != null) {
+            long red0 = _red, blue0 = _blue,
+                p00 = _p0, p10 = _p1, p20 = _p2, p30 = _p3;
+            long changed = (_stack[f] ^ red0) | (_stack[f + 1] ^ blue0)
+                | (_stack[f + 2] ^ p00) | (_stack[f + 3] ^ p10)
+                | (_stack[f + 4] ^ p20) | (_stack[f + 5] ^ p30);
+            for (; changed != 0; changed &= changed - 1) {
+                int k = Long.numberOfTrailingZeros(changed);
+                listener.cellChanged(k,
+                    cell(k, red0, blue0, p00, p10, p20, p30),
+                    cell(k, _stack[f], _stack[f + 1], _stack[f + 2],
+                         _stack[f + 3], _stack[f + 4], _stack[f + 5]));
+            }
+        }
+        _red = _stack[f];
+        _blue = _stack[f + 1];
+        _p0 = _stack[f + 2];
+        _p1 = _stack[f + 3];
+        _p2 = _stack[f + 4];
+        _p3 = _stack[f + 5];
+        _hash = _stack[f + 6];
+        _spots = (int) _stack[f + 7];
+        _lastJumps = _lastWaves = 0;
+    }
+
+    /** Largest number of spots a square may hold. */
+    private static final int MAX_SPOTS = 15;
+
+    /** Number of longs saved by push. */
+    private static final int FRAME = 8;
+
+    /** Initial number of frames in the undo stack. */
+    private static final int INITIAL_DEPTH = 32;
+
+    /** Indices of the masks for a size: all squares; squares with a
+     *  neighbor to the west and to the east; squares with 2, 3 and 4
+     *  neighbors; and bits 0 - 3 of 16 minus the degree of each square,
+     *  so that adding them subtracts the degree. */
+    private static final int
+        ALL = 0, HAS_WEST = 1, HAS_EAST = 2,
+        DEGREE2 = 3, DEGREE3 = 4, DEGREE4 = 5,
+        LESS0 = 6, LESS1 = 7, LESS2 = 8, LESS3 = 9;
+
+    /** MASKS[N] holds the masks for an N x N board. */
+    private static final long[][] MASKS = new long[MAX_SIZE + 1][];
+
+    static {
+        for (int N = 2; N <= MAX_SIZE; N += 1) {
+            Topology topology = Topology.grid(N);
+            long[] m = MASKS[N] = new long[LESS3 + 1];
+            for (int n = 0; n < N * N; n += 1) {
+                long bit = 1L << n;
+                int degree = topology.degree(n);
+                int less = 16 - degree;
+                m[ALL] |= bit;
+                m[HAS_WEST] |= n % N > 0 ? bit : 0;
+                m[HAS_EAST] |= n % N < N - 1 ? bit : 0;
+                m[DEGREE2 + degree - 2] |= bit;
+                for (int k = 0; k < 4; k += 1) {
+                    m[LESS0 + k] |= (less >> k & 1) != 0 ? bit : 0;
+                }
+            }
+        }
+    }
+
+    /** My layout, an N x N grid. */
+    private Topology _topology;
+    /** N, the number of squares on a side. */
+    private int _size;
+    /** The masks for my size. */
+    private long[] _masks;
+    /** Planes of the red and blue squares. */
+    private long _red, _blue;
+    /** Bits 0 - 3 of the spot counts. */
+    private long _p0, _p1, _p2, _p3;
+    /** Zobrist key, as for Board. */
+    private long _hash;
+    /** Total number of spots. */
+    private int _spots;
+    /** Number of jumps and waves caused by the last move. */
+    private int _lastJumps, _lastWaves;
+    /** Saved contents, FRAME longs per move. */
+    private long[] _stack;
+    /** Number of moves saved in _stack. */
+    private int _depth;
+    /** Told of each change to my squares, or null. */
+    private CellListener _listener;
+}
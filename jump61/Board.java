@@ -1,6 +1,6 @@
 package jump61;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 
 import java.util.function.Consumer;
@@ -12,17 +12,22 @@ import static jump61.Square.square;
  *  row and column (between 1 and size()), or by square number, numbering
  *  squares by rows, with squares in row 1 numbered from 0 to size()-1, in
  *  row 2 numbered from size() to 2*size() - 1, etc. (i.e., row-major order).
+ *  Which squares are neighbors is given by a Topology: normally the N x N
+ *  grid, but boards may also be rectangular, toroidal or hexagonal, with
+ *  rows() rows of cols() squares each.
  *
  *  A Board may be given a notifier---a Consumer<Board> whose
  *  .accept method is called whenever the Board's contents are changed.
+ *  Alternatively, it may be given a Consumer<BoardChange>, which is told
+ *  which squares changed, once per move or every so many jumps.
  *
  *  @author Ethan Ikegami
  */
-class Board {
+class Board extends SearchBoard {
 
     /** An uninitialized Board.  Only for use by subtypes. */
     protected Board() {
-        boardIntialize(6);
+        boardIntialize(Topology.grid(6));
     }
 
     /** An N x N board in initial configuration. */
@@ -30,104 +35,287 @@ class Board {
         if (N <= 1) {
             throw new GameException("Size must be greater than 1!");
         } else {
-            boardIntialize(N);
+            boardIntialize(Topology.grid(N));
         }
     }
 
-    /** Initialize a new Board of size N. */
-    private void boardIntialize(int N) {
-        _size = N;
+    /** A board in initial configuration whose squares are laid out and
+     *  connected as given by TOPOLOGY. */
+    Board(Topology topology) {
+        boardIntialize(topology);
+    }
+
+    /** Initialize a new Board laid out as given by TOPOLOGY. */
+    private void boardIntialize(Topology topology) {
+        _size = topology.size();
+        _topology = topology;
+        int numSquares = topology.numSquares();
         _notifier = NOP;
-        _board = new Square[numSquares()];
-        for (int i = 0; i < numSquares(); i++) {
-            _board[i] = square(WHITE, 0);
+        _tracker = null;
+        _cells = new byte[numSquares];
+        Arrays.fill(_cells, INITIAL_CELL);
+        _hash = 0;
+        for (int i = 0; i < _cells.length; i += 1) {
+            _hash ^= key(i, INITIAL_CELL);
         }
-        _white = numSquares();
-        _spots = numSquares();
+        _white = numSquares;
+        _spots = numSquares;
         _blue = 0;
         _red = 0;
-        _history = new ArrayList<>();
+        _history = new UndoJournal(numSquares);
+        _published = null;
+        _critical = null;
     }
 
     /** A board whose initial contents are copied from BOARD0, but whose
      *  undo history is clear, and whose notifier does nothing. */
     Board(Board board0) {
-        this(board0.size());
+        this(board0.topology());
         copy(board0);
-        _white = board0.getWhite();
-        _red = board0.getRed();
-        _blue = board0.getBlue();
-        _size = board0.size();
-        _spots = board0.getSpots();
         _notifier = NOP;
-        _readonlyBoard = new ConstantBoard(this);
+        _tracker = null;
+    }
+
+    /** A board whose initial contents are copied from BOARD0, which may
+     *  be a BitBoard, with clear undo history and a notifier that does
+     *  nothing. */
+    Board(SearchBoard board0) {
+        this(board0.topology());
+        for (int n = 0; n < _cells.length; n += 1) {
+            Square sq = board0.get(n);
+            _cells[n] = pack(sq.getSide(), sq.getSpots());
+        }
+        finishLoad();
+    }
+
+    /** A board whose initial contents are those of SNAPSHOT, with clear
+     *  undo history and a notifier that does nothing. */
+    Board(BoardSnapshot snapshot) {
+        this(snapshot.topology());
+        byte[][] chunks = snapshot.chunks();
+        for (int c = 0; c < chunks.length; c += 1) {
+            System.arraycopy(chunks[c], 0, _cells, c << CHUNK_SHIFT,
+                             chunks[c].length);
+        }
+        _white = snapshot.getWhite();
+        _red = snapshot.getRed();
+        _blue = snapshot.getBlue();
+        _spots = snapshot.getSpots();
+        _hash = snapshot.getHash();
     }
 
-    /** Returns a readonly version of this board. */
+    /** Returns a readonly version of this board, which reflects my
+     *  contents as they change. */
     Board readonlyBoard() {
+        if (_readonlyBoard == null) {
+            _readonlyBoard = new ConstantBoard(this);
+        }
         return _readonlyBoard;
     }
 
+    /** Return a new board with my contents for a search to play on with
+     *  makeMove and unmakeMove: a BitBoard if my size allows, and
+     *  otherwise a plain Board. */
+    SearchBoard searchCopy() {
+        return topology().isSquareGrid() && BitBoard.fits(size())
+            ? new BitBoard(this) : new Board(this);
+    }
+
+    /** Returns an immutable snapshot of my current contents.  The
+     *  snapshot shares all parts of the previous one that have not
+     *  changed since it was taken, so that publishing a position costs
+     *  time proportional to what changed, not to the size of the board. */
+    BoardSnapshot snapshot() {
+        int numChunks = (numSquares() + CHUNK - 1) >> CHUNK_SHIFT;
+        byte[][] chunks;
+        if (_published == null) {
+            chunks = new byte[numChunks][];
+            _dirtyChunks = new boolean[numChunks];
+            Arrays.fill(_dirtyChunks, true);
+            _anyDirty = true;
+        } else if (!_anyDirty) {
+            return _published;
+        } else {
+            chunks = _published.chunks().clone();
+        }
+        for (int c = 0; c < numChunks; c += 1) {
+            if (_dirtyChunks[c]) {
+                chunks[c] = Arrays.copyOfRange(_cells, c << CHUNK_SHIFT,
+                    Math.min(numSquares(), (c + 1) << CHUNK_SHIFT));
+                _dirtyChunks[c] = false;
+            }
+        }
+        _anyDirty = false;
+        _published = new BoardSnapshot(_topology, chunks, _white, _red,
+                                       _blue, _spots, _hash);
+        return _published;
+    }
+
+    /** Note that square #N has changed since my last snapshot. */
+    private void markChanged(int n) {
+        if (_published != null) {
+            _dirtyChunks[n >> CHUNK_SHIFT] = true;
+            _anyDirty = true;
+        }
+    }
+
     /** (Re)initialize me to a cleared board with N squares on a side. Clears
      *  the undo history and sets the number of moves to 0. */
     void clear(int N) {
-        boardIntialize(N);
+        boardIntialize(Topology.grid(N));
+        announceAll();
+    }
+
+    /** (Re)initialize me to a cleared board laid out as given by
+     *  TOPOLOGY, as for clear(N). */
+    void clear(Topology topology) {
+        boardIntialize(topology);
+        announceAll();
+    }
+
+    /** Set square #N to the packed contents CELL, as one step in
+     *  replacing all my squares.  Nothing else is updated until
+     *  finishLoad is called. */
+    void loadCell(int n, byte cell) {
+        _cells[n] = cell;
+    }
+
+    /** Finish replacing my squares with loadCell: recount the colors and
+     *  spots, recompute my hash key, clear the undo history and announce
+     *  the change.  Allocates nothing unless there is a notifier or a
+     *  snapshot to update. */
+    void finishLoad() {
+        _white = _red = _blue = _spots = 0;
+        _hash = 0;
+        for (int n = 0; n < _cells.length; n += 1) {
+            byte cell = _cells[n];
+            _hash ^= key(n, cell);
+            _spots += spotsOf(cell);
+            switch (sideOf(cell)) {
+            case RED:
+                _red += 1;
+                break;
+            case BLUE:
+                _blue += 1;
+                break;
+            default:
+                _white += 1;
+                break;
+            }
+        }
         _history.clear();
-        announce();
+        _critical = null;
+        _published = null;
+        _lastJumps = _lastWaves = 0;
+        announceAll();
     }
 
     /** Copy the contents of BOARD into me. Resets undo
-     * history and number of moves. */
+     * history and number of moves.  Copying a board with my layout
+     * allocates nothing, so that searches may reuse boards. */
     void copy(Board board) {
-        _board = new Square[board.numSquares()];
-        Square[] copyBoard = board.getBoard();
-        for (int i = 0; i < board.numSquares(); i++) {
-            _board[i] = square(parseSide(copyBoard[i].getSide().toString()),
-                    copyBoard[i].getSpots());
-        }
-        _white = board.getWhite();
-        _red = board.getRed();
-        _blue = board.getBlue();
-        _spots = board.getSpots();
-        _size = board.size();
-        _history.clear();
-        announce();
+        Topology old = _topology;
+        _topology = board.topology();
+        _size = _topology.size();
+        if (_cells.length != numSquares()) {
+            _cells = new byte[numSquares()];
+        }
+        copyCells(board);
+        if (old == _topology) {
+            _history.clear();
+        } else {
+            _history = new UndoJournal(numSquares());
+        }
+        _published = null;
+        announceAll();
     }
 
-    /** Copy the contents of BOARD into me, without modifying my undo
-     *  history. Assumes BOARD and I have the same size. */
+    @Override
+    void copy(SearchBoard board) {
+        copy(board instanceof Board ? (Board) board : new Board(board));
+    }
+
+    /** Return square #N of BOARD packed as by pack.  Other kinds of
+     *  board are read through get, which shows every white square as
+     *  holding one spot. */
+    static byte cellOf(Board board, int n) {
+        if (board.getClass() == Board.class) {
+            return board._cells[n];
+        }
+        Square sq = board.get(n);
+        return pack(sq.getSide(), sq.getSpots());
+    }
+
+    /** Copy the contents of BOARD into me, keeping my undo history.  The
+     *  copy is recorded like a move, so that undo restores my contents
+     *  from before it. Assumes BOARD and I have the same size. */
     public void internalCopy(Board board) {
-        assert size() == board.size();
-        Square[] copyBoard = board.getBoard();
-        for (int i = 0; i < numSquares(); i++) {
-            _board[i] = square(parseSide(copyBoard[i].getSide().toString()),
-                    copyBoard[i].getSpots());
-        }
-        _white = board.getWhite();
-        _red = board.getRed();
-        _blue = board.getBlue();
-        _spots = board.getSpots();
-        announce();
+        assert topology() == board.topology();
+        markUndo();
+        for (int i = 0; i < _cells.length; i += 1) {
+            _history.record(i, _cells[i]);
+        }
+        copyCells(board);
+        _published = null;
+        announceAll();
     }
 
-    /** Copy the contents of STATE and returns a new one. */
-    public Square[] boardCopyState(Square[] state) {
-        Square[] copyBoard = new Square[state.length];
-        for (int i = 0; i < numSquares(); i++) {
-            copyBoard[i] = square(parseSide(state[i].getSide().toString()),
-                    state[i].getSpots());
+    /** Copy the squares and color counts of BOARD, which must have my
+     *  size, into me.  A plain Board is copied with a single arraycopy;
+     *  subtypes such as ConstantBoard only promise their get method, so
+     *  they are copied (and counted) square by square. */
+    private void copyCells(Board board) {
+        _critical = null;
+        if (board.getClass() == Board.class) {
+            System.arraycopy(board._cells, 0, _cells, 0, _cells.length);
+            _white = board.getWhite();
+            _red = board.getRed();
+            _blue = board.getBlue();
+            _spots = board.getSpots();
+            _hash = board._hash;
+        } else {
+            _white = _red = _blue = _spots = 0;
+            _hash = 0;
+            for (int i = 0; i < _cells.length; i += 1) {
+                Square sq = board.get(i);
+                _cells[i] = pack(sq.getSide(), sq.getSpots());
+                _hash ^= key(i, _cells[i]);
+                _spots += sq.getSpots();
+                switch (sq.getSide()) {
+                case RED:
+                    _red += 1;
+                    break;
+                case BLUE:
+                    _blue += 1;
+                    break;
+                default:
+                    _white += 1;
+                    break;
+                }
+            }
         }
-        return copyBoard;
     }
 
-    /** Return the number of rows and of columns of THIS. */
+    /** Return the number of rows and of columns of THIS.  For boards
+     *  that are not square, this is the number of columns. */
     int size() {
         return _size;
     }
 
+    /** Return the number of rows. */
+    int rows() {
+        return topology().rows();
+    }
+
+    /** Return the number of columns. */
+    int cols() {
+        return topology().cols();
+    }
+
     /** Return the number of squares in the Board. */
+    @Override
     int numSquares() {
-        return _size * _size;
+        return topology().numSquares();
     }
 
     /** Returns the contents of the square at row R, column C
@@ -139,25 +327,27 @@ class Board {
     /** Returns the contents of square #N, numbering squares by rows, with
      *  squares in row 1 number 0 - size()-1, in row 2 numbered
      *  size() - 2*size() - 1, etc. */
+    @Override
     Square get(int n) {
-        return _board[n];
+        byte cell = _cells[n];
+        return square(sideOf(cell), spotsOf(cell));
     }
 
     /** Returns the Side of the player who would be next to move.  If the
      *  game is won, this will return the loser (assuming legal position). */
+    @Override
     Side whoseMove() {
-        return ((getSpots() + size()) & 1) == 0 ? RED : BLUE;
+        return ((getSpots() + numSquares()) & 1) == 0 ? RED : BLUE;
     }
 
     /** Return true iff row R and column C denotes a valid square. */
     final boolean exists(int r, int c) {
-        return 1 <= r && r <= size() && 1 <= c && c <= size();
+        return 1 <= r && r <= rows() && 1 <= c && c <= cols();
     }
 
     /** Return true iff S is a valid square number. */
     final boolean exists(int s) {
-        int N = size();
-        return 0 <= s && s < N * N;
+        return 0 <= s && s < numSquares();
     }
 
     /** Return the row number for square #N. */
@@ -165,7 +355,7 @@ class Board {
         if (!exists(n)) {
             throw new GameException("Not possible row for given index.");
         } else {
-            return n / size() + 1;
+            return topology().row(n);
         }
     }
 
@@ -174,7 +364,7 @@ class Board {
         if (!exists(n)) {
             throw new GameException("Not possible column for given index.");
         } else {
-            return n % size() + 1;
+            return topology().col(n);
         }
     }
 
@@ -184,7 +374,7 @@ class Board {
             throw new GameException("Not possible index "
                     + "for given row and column.");
         } else {
-            return (c - 1) + (r - 1) * size();
+            return (c - 1) + (r - 1) * cols();
         }
     }
 
@@ -206,20 +396,15 @@ class Board {
 
     /** Returns true iff it would currently be legal for PLAYER to add a spot
      *  to square #N. */
+    @Override
     boolean isLegal(Side player, int n) {
-        return (isLegal(player)
-                && (_board[n].getSide().toString().equals(player.toString())
-                || _board[n].getSide().equals(WHITE)));
-    }
-
-    /** Returns true iff PLAYER is allowed to move at this point. */
-    boolean isLegal(Side player) {
-        return (whoseMove().toString().equals(player.toString())
-                && getWinner() == null);
+        Side side = sideOf(_cells[n]);
+        return isLegal(player) && (side == player || side == WHITE);
     }
 
     /** Returns the winner of the current position, if the game is over,
      *  and otherwise null. */
+    @Override
     final Side getWinner() {
         if (getBlue() == numSquares()) {
             return BLUE;
@@ -231,6 +416,7 @@ class Board {
     }
 
     /** Return the number of squares of given SIDE. */
+    @Override
     int numOfSide(Side side) {
         switch (side.toString()) {
         case "white":
@@ -259,20 +445,15 @@ class Board {
      *  it color PLAYER if NUM > 0 (otherwise, white). */
     void set(int r, int c, int num, Side player) {
         if (getWinner() == null) {
-            increaseSpots(sqNum(r, c), num);
-            colorCount(player, _board[sqNum(r, c)].getSide().toString());
+            int n = sqNum(r, c);
+            if (num <= 0) {
+                throw new GameException("Not possible set value");
+            }
             markUndo();
-            internalSet(r, c, num, player);
-            announce();
-        }
-    }
-
-    /** Sets the squares given a jump using row R column C
-     * with a number NUM and side PLAYER. */
-    void jumpSet(int r, int c, int num, Side player) {
-        if (getWinner() == null) {
-            colorCount(player, _board[sqNum(r, c)].getSide().toString());
-            internalSet(r, c, num, player);
+            increaseSpots(n, num);
+            colorCount(player, sideOf(_cells[n]));
+            _lastJumps = _lastWaves = 0;
+            internalSet(n, num, player);
             announce();
         }
     }
@@ -287,8 +468,8 @@ class Board {
     /** Set the square #N to NUM spots (0 <= NUM), and give it color PLAYER
      *  if NUM > 0 (otherwise, white). Does not announce changes. */
     private void internalSet(int n, int num, Side player) {
-        _board[n] = square(player, num);
-        if (num > neighbors(n)) {
+        setCell(n, pack(player, num));
+        if (num > _topology.degree(n)) {
             jump(n);
         }
     }
@@ -300,83 +481,126 @@ class Board {
         if (_history.isEmpty()) {
             throw new GameException("No history to undo");
         } else {
-            GameState prev = _history.get(_history.size() - 1);
-            _board = prev.getBoardGame();
-            _white = prev.getWhiteGame();
-            _red = prev.getRedGame();
-            _blue = prev.getBlueGame();
-            _spots = prev.getSpotsGame();
-            _history.remove(_history.size() - 1);
+            restore();
         }
         announce();
     }
 
-    /** Record the beginning of a move in the undo history. */
-    void markUndo() {
-        _history.add(new GameState());
-    }
-
-    /** Represents enough of the state of a game to allow undoing of moves. */
-    private class GameState {
-        /** A holder for the _cells and _active instance variables of this
-         *  Model. */
-        GameState() {
-            _boardGame = boardCopyState(_board);
-            _whiteGame = getWhite();
-            _redGame = getRed();
-            _blueGame = getBlue();
-            _spotsGame = getSpots();
+    /** Revert the squares and counters changed by the last move recorded
+     *  in my history and remove it from the history. */
+    private void restore() {
+        for (int k = _history.end() - 1; k >= _history.start(); k -= 1) {
+            int sq = _history.square(k);
+            _hash ^= key(sq, _cells[sq]) ^ key(sq, _history.cell(k));
+            byte old = _cells[sq];
+            _cells[sq] = _history.cell(k);
+            if (_critical != null) {
+                _critical.update(sq, old, _cells[sq]);
+            }
+            markChanged(sq);
+            if (_tracker != null) {
+                _tracker.touch(sq);
+            }
+            if (_listener != null) {
+                _listener.cellChanged(sq, old, _cells[sq]);
+            }
         }
+        _white = _history.white();
+        _red = _history.red();
+        _blue = _history.blue();
+        _spots = _history.spots();
+        _history.pop();
+    }
 
-        /** Contents of board. */
-        private Square[] _boardGame;
+    /** Add a spot from PLAYER to square #N, with its cascade, for use in
+     *  searches.  Unlike addSpot, this does not check its arguments or
+     *  notify anyone of the change, and it records only what is needed
+     *  for unmakeMove to revert it.  Assumes isLegal(PLAYER, N). */
+    @Override
+    void makeMove(Side player, int n) {
+        int jumpsPerNotice = _jumpsPerNotice;
+        _jumpsPerNotice = 0;
+        markUndo();
+        _spots += 1;
+        colorCount(player, sideOf(_cells[n]));
+        _lastJumps = _lastWaves = 0;
+        internalSet(n, spotsOf(_cells[n]) + 1, player);
+        _jumpsPerNotice = jumpsPerNotice;
+    }
 
-        /** Get the contents of board.
-         * @return Square[]
-         * */
-        public Square[] getBoardGame() {
-            return _boardGame;
+    /** Make a move whose outcome is already known, for use in searches
+     *  as for makeMove: set each square SQUARES[k] to the packed contents
+     *  CELLS[k].  The move is recorded for unmakeMove like any other. */
+    @Override
+    void replayMove(int[] squares, byte[] cells) {
+        markUndo();
+        for (int k = 0; k < squares.length; k += 1) {
+            int n = squares[k];
+            byte old = _cells[n];
+            _spots += spotsOf(cells[k]) - spotsOf(old);
+            colorCount(sideOf(cells[k]), sideOf(old));
+            setCell(n, cells[k]);
         }
+        _lastJumps = _lastWaves = 0;
+    }
 
-        /** Count of the number of white squares on a board. */
-        private int _whiteGame;
-
-        /** Get the number of white squares on a board.
-         * @return int
-         * */
-        public int getWhiteGame() {
-            return _whiteGame;
-        }
+    /** Revert the last makeMove, without notifying anyone.  Its cost is
+     *  proportional to the number of squares that move changed. */
+    @Override
+    void unmakeMove() {
+        assert !_history.isEmpty();
+        restore();
+    }
 
-        /** Count of the number of red squares on a board. */
-        private int _redGame;
+    /** Record the beginning of a move in the undo history. */
+    void markUndo() {
+        _history.mark(_white, _red, _blue, _spots);
+    }
 
-        /** Get the number of red squares on a board.
-         * @return int
-         * */
-        public int getRedGame() {
-            return _redGame;
-        }
+    /** Keep only the last LIMIT (and at most 2 * LIMIT) moves in my undo
+     *  history, or all of them if LIMIT is 0. */
+    void setUndoLimit(int limit) {
+        _history.setLimit(limit);
+    }
 
-        /** Count of the number of blue squares on a board. */
-        private int _blueGame;
+    /** If ON, let cascades that come to involve many squares at once
+     *  finish in whole-board waves (see WaveCascade), using vector
+     *  instructions where the JVM provides them.  Otherwise, always
+     *  follow individual squares. */
+    void setWaveCascade(boolean on) {
+        setWaveCascade(on, 1);
+    }
 
-        /** Get the number of blue squares on a board.
-         * @return int
-         * */
-        public int getBlueGame() {
-            return _blueGame;
+    /** As for setWaveCascade(ON), but sweeping stripes of very large
+     *  boards on THREADS threads if THREADS > 1.  The engine made here
+     *  is mine, and is closed when it is replaced. */
+    void setWaveCascade(boolean on, int threads) {
+        WaveCascade engine;
+        if (!on) {
+            engine = null;
+        } else if (threads > 1) {
+            engine = new ParallelWaveCascade(WaveCascade.create(), threads);
+        } else {
+            engine = WaveCascade.create();
         }
+        setWaveCascade(engine);
+        _ownWaves = engine != null;
+    }
 
-        /** Count of the number of spots on a board. */
-        private int _spotsGame;
-
-        /** Get the number of spots on a board.
-         * @return int
-         * */
-        public int getSpotsGame() {
-            return _spotsGame;
+    /** Use ENGINE for cascades that involve many squares at once, or
+     *  never use waves if ENGINE is null.  ENGINE remains its caller's
+     *  to close. */
+    void setWaveCascade(WaveCascade engine) {
+        if (_ownWaves && _waveCascade != engine) {
+            _waveCascade.close();
         }
+        _waveCascade = engine;
+        _ownWaves = false;
+    }
+
+    /** Return the WaveCascade set by setWaveCascade, or null. */
+    WaveCascade waveCascade() {
+        return _waveCascade;
     }
 
     /** Add DELTASPOTS spots of side PLAYER to row R, column C,
@@ -392,103 +616,201 @@ class Board {
     }
 
     /** Do all jumping on this board, assuming that initially, S is the only
-     *  square that might be over-full. */
+     *  square that might be over-full.  Over-full squares wait in a FIFO
+     *  queue, each at most once, and are emptied a wave at a time: wave
+     *  k+1 consists of the squares made over-full by wave k.  Jumping
+     *  stops once one side owns every square.  The number of jumps and
+     *  waves is recorded for lastJumps and lastWaves.  The queue grows
+     *  with the number of squares waiting, so the cost of a cascade
+     *  depends on the squares it reaches, not on the size of the board. */
     private void jump(int S) {
-        for (int i : neighborJumpIndex(S)) {
-            jumpSet(row(i), col(i), get(i).getSpots() + 1,
-                    get(S).getSide());
+        if (_queued == null || _queued.length != numSquares()) {
+            _queue = new int[INITIAL_QUEUE];
+            _queued = new boolean[numSquares()];
+        }
+        int[] degree = _topology.degrees();
+        int[] offsets = _topology.offsets();
+        int[] adjacency = _topology.adjacency();
+        Side player = sideOf(_cells[S]);
+        _head = _count = 0;
+        enqueue(S);
+        while (_count > 0 && getWinner() == null) {
+            if (_waveCascade != null && _topology.kind() == Topology.GRID
+                && _count >= Math.max(1, numSquares() >> WAVE_SHIFT)) {
+                clearQueue();
+                jumpInWaves(player);
+                return;
+            }
+            _lastWaves += 1;
+            for (int wave = _count; wave > 0 && getWinner() == null;
+                 wave -= 1) {
+                int sq = _queue[_head];
+                _head = (_head + 1) & (_queue.length - 1);
+                _count -= 1;
+                _queued[sq] = false;
+                setCell(sq, (byte) (_cells[sq] - degree[sq]));
+                _lastJumps += 1;
+                for (int k = offsets[sq]; k < offsets[sq + 1]; k += 1) {
+                    int i = adjacency[k];
+                    colorCount(player, sideOf(_cells[i]));
+                    int spots = spotsOf(_cells[i]) + 1;
+                    setCell(i, pack(player, spots));
+                    if (spots > degree[i] && !_queued[i]) {
+                        enqueue(i);
+                    }
+                }
+                if (spotsOf(_cells[sq]) > degree[sq]) {
+                    enqueue(sq);
+                }
+                if (_jumpsPerNotice > 0
+                    && _lastJumps % _jumpsPerNotice == 0) {
+                    announce();
+                }
+            }
+        }
+        clearQueue();
+    }
+
+    /** Empty the queue of over-full squares. */
+    private void clearQueue() {
+        for (; _count > 0; _count -= 1) {
+            _queued[_queue[_head]] = false;
+            _head = (_head + 1) & (_queue.length - 1);
+        }
+    }
+
+    /** Finish the current cascade by PLAYER with _waveCascade, then
+     *  bring the undo history, hash key, counts and change records up to
+     *  date from the squares that changed. */
+    private void jumpInWaves(Side player) {
+        if (_waveBefore == null || _waveBefore.length != numSquares()) {
+            _waveBefore = new byte[numSquares()];
+        }
+        byte[] before = _waveBefore;
+        System.arraycopy(_cells, 0, before, 0, before.length);
+        _waveCascade.resolve(_cells, _topology, player);
+        _lastJumps += _waveCascade.jumps();
+        _lastWaves += _waveCascade.waves();
+        for (int n = 0; n < before.length; n += 1) {
+            byte old = before[n];
+            if (_cells[n] != old) {
+                colorCount(sideOf(_cells[n]), sideOf(old));
+                noteCell(n, old);
+            }
+        }
+    }
+
+    /** Add square #SQ to the end of the queue of over-full squares,
+     *  enlarging the queue if needed. */
+    private void enqueue(int sq) {
+        if (_count == _queue.length) {
+            int[] queue = new int[2 * _count];
+            for (int k = 0; k < _count; k += 1) {
+                queue[k] = _queue[(_head + k) & (_count - 1)];
+            }
+            _queue = queue;
+            _head = 0;
+        }
+        _queue[(_head + _count) & (_queue.length - 1)] = sq;
+        _queued[sq] = true;
+        _count += 1;
+    }
+
+    /** Replace the packed contents of square #N with CELL, recording the
+     *  change for undo and in my hash key.  Does not update the color or
+     *  spot counters. */
+    private void setCell(int n, byte cell) {
+        byte old = _cells[n];
+        _cells[n] = cell;
+        noteCell(n, old);
+    }
+
+    /** Record, for undo, my hash key and any change notice, that square
+     *  #N, which used to hold packed contents OLD, has been changed. */
+    private void noteCell(int n, byte old) {
+        _history.record(n, old);
+        _hash ^= key(n, old) ^ key(n, _cells[n]);
+        if (_critical != null) {
+            _critical.update(n, old, _cells[n]);
+        }
+        markChanged(n);
+        if (_tracker != null) {
+            _tracker.touch(n);
+        }
+        if (_listener != null) {
+            _listener.cellChanged(n, old, _cells[n]);
         }
     }
 
+    /** Return the number of times a square jumped during the last
+     *  set or addSpot. */
+    @Override
+    int lastJumps() {
+        return _lastJumps;
+    }
+
+    /** Return the number of waves of jumps caused by the last set or
+     *  addSpot: 0 if nothing jumped, 1 if only the square that received
+     *  the spot did, and so on. */
+    int lastWaves() {
+        return _lastWaves;
+    }
+
     /** Return a List of the neighbors of a given index and
      * given index CURR. */
     public int[] neighborJumpIndex(int curr) {
-        int neighborCount = neighbors(curr);
-        int[] neighbors = new int[neighborCount];
-        switch (neighborCount) {
-        case 4:
-            neighbors[0] = curr - 1;
-            neighbors[1] = curr + 1;
-            neighbors[2] = curr - size();
-            neighbors[3] = curr + size();
-            _board[curr] = square(get(curr).getSide(),
-                    get(curr).getSpots() - 4);
-            break;
-        case 3:
-            if (row(curr) == 1) {
-                neighbors[0] = curr - 1;
-                neighbors[1] = curr + 1;
-                neighbors[2] = curr + size();
-            } else if (row(curr) == size()) {
-                neighbors[0] = curr - 1;
-                neighbors[1] = curr + 1;
-                neighbors[2] = curr - size();
-            } else if (col(curr) == 1) {
-                neighbors[0] = curr - size();
-                neighbors[1] = curr + size();
-                neighbors[2] = curr + 1;
-            } else if (col(curr) == size()) {
-                neighbors[0] = curr - size();
-                neighbors[1] = curr + size();
-                neighbors[2] = curr - 1;
-            } else {
-                throw new GameException("Invalid Neighbor Count.");
-            }
-            _board[curr] = square(get(curr).getSide(),
-                    get(curr).getSpots() - 3);
-            break;
-        case 2:
-            if (row(curr) == 1 && col(curr) == 1) {
-                neighbors[0] = curr + 1;
-                neighbors[1] = curr + size();
-            } else if (row(curr) == size() && col(curr) == size()) {
-                neighbors[0] = curr - 1;
-                neighbors[1] = curr - size();
-            } else if (row(curr) == 1 && col(curr) == size()) {
-                neighbors[0] = curr - 1;
-                neighbors[1] = curr + size();
-            } else if (row(curr) == size() && col(curr) == 1) {
-                neighbors[0] = curr + 1;
-                neighbors[1] = curr - size();
-            } else {
-                throw new GameException("Invalid Neighbor Count.");
-            }
-            _board[curr] = square(get(curr).getSide(),
-                    get(curr).getSpots() - 2);
-            break;
-        default:
+        if (!exists(curr)) {
             throw new GameException("Invalid Neighbor Count.");
         }
-        return neighbors;
+        int[] offsets = _topology.offsets();
+        return Arrays.copyOfRange(_topology.adjacency(), offsets[curr],
+                                  offsets[curr + 1]);
     }
 
     /** Returns my dumped representation. */
     @Override
     public String toString() {
-        StringBuilder total = new StringBuilder("===");
-        int newRow = size();
-        for (Square i : getBoard()) {
-            if (newRow == size()) {
-                total.append("\n   ");
-                newRow = 0;
-            }
-            total.append(" " + i.getSpots() + toSingle(i.getSide()));
-            newRow++;
-        }
-        total.append("\n===");
+        StringBuilder total = new StringBuilder(4 * numSquares() + 16);
+        dump(total);
         return total.toString();
     }
 
+    /** Write my dumped representation (as for toString) to OUT, a row
+     *  at a time, so that large boards need not be held in a String. */
+    void dump(Appendable out) {
+        Formatter total = new Formatter(out);
+        total.format("===");
+        StringBuilder line = new StringBuilder(3 * cols() + 4);
+        for (int r = 1; r <= rows(); r += 1) {
+            line.setLength(0);
+            line.append("\n   ");
+            appendRow(line, r);
+            total.format("%s", line);
+        }
+        total.format("\n===");
+        total.flush();
+    }
+
+    /** Append the squares in row R of my dumped representation, each
+     *  preceded by a blank, to LINE. */
+    private void appendRow(StringBuilder line, int r) {
+        for (int n = sqNum(r, 1), end = n + cols(); n < end; n += 1) {
+            Square sq = get(n);
+            line.append(' ').append(sq.getSpots())
+                .append(toSingle(sq.getSide()));
+        }
+    }
+
     /** Converts SIDE to a single String value.
      * @return String
      * */
     public String toSingle(Side side) {
-        switch (side.toString()) {
-        case "white":
+        switch (side) {
+        case WHITE:
             return "-";
-        case "red":
+        case RED:
             return "r";
-        case "blue":
+        case BLUE:
             return "b";
         default:
             throw new GameException("Not Possible Color.");
@@ -499,41 +821,82 @@ class Board {
      *  textual display, with row and column numbers.  This is distinct
      *  from the dumped representation (returned by toString). */
     public String toDisplayString() {
-        String[] lines = toString().trim().split("\\R");
-        Formatter out = new Formatter();
-        for (int i = 1; i + 1 < lines.length; i += 1) {
-            out.format("%2d %s%n", i, lines[i].trim());
+        StringBuilder out = new StringBuilder(4 * numSquares() + 16);
+        display(out);
+        return out.toString();
+    }
+
+    /** Write the rendition returned by toDisplayString to OUT, a row at
+     *  a time. */
+    void display(Appendable out) {
+        Formatter total = new Formatter(out);
+        StringBuilder line = new StringBuilder(3 * cols() + 4);
+        for (int r = 1; r <= rows(); r += 1) {
+            line.setLength(0);
+            appendRow(line, r);
+            total.format("%2d %s%n", r, line.substring(1));
         }
-        out.format("  ");
-        for (int i = 1; i <= size(); i += 1) {
-            out.format("%3d", i);
+        total.format("  ");
+        for (int i = 1; i <= cols(); i += 1) {
+            total.format("%3d", i);
         }
-        return out.toString();
+        total.flush();
     }
 
     /** Returns the number of neighbors of the square at row R, column C. */
     int neighbors(int r, int c) {
-        int size = size();
-        int n;
-        n = 0;
-        if (r > 1) {
-            n += 1;
-        }
-        if (c > 1) {
-            n += 1;
-        }
-        if (r < size) {
-            n += 1;
-        }
-        if (c < size) {
-            n += 1;
-        }
-        return n;
+        return topology().degree(sqNum(r, c));
     }
 
     /** Returns the number of neighbors of square #N. */
     int neighbors(int n) {
-        return neighbors(row(n), col(n));
+        if (!exists(n)) {
+            throw new GameException("Not possible index.");
+        }
+        return topology().degree(n);
+    }
+
+    /** Return true iff square #N holds as many spots as it has
+     *  neighbors, so that one more spot makes it jump. */
+    @Override
+    boolean isCritical(int n) {
+        return spotsOf(_cells[n]) == _topology.degree(n);
+    }
+
+    /** Return the number of critical squares (see isCritical) of color
+     *  SIDE. */
+    @Override
+    int numCritical(Side side) {
+        return criticalSquares().count(side);
+    }
+
+    /** Return critical square #K of color SIDE, where 0 <= K <
+     *  numCritical(SIDE).  The order is arbitrary, and changes with my
+     *  contents. */
+    @Override
+    int critical(Side side, int k) {
+        return criticalSquares().get(side, k);
+    }
+
+    /** Return my critical squares.  They are found when first asked for
+     *  and then kept up to date by every change, including undo. */
+    private CriticalSquares criticalSquares() {
+        if (_critical == null) {
+            _critical = new CriticalSquares(_cells, _topology);
+        }
+        return _critical;
+    }
+
+    /** Returns the shared neighbor and coordinate tables for my size.
+     *  Views such as ConstantBoard only promise their size and get
+     *  methods, and so are taken to be grids of their current size when
+     *  they do not match the layout they were made with. */
+    @Override
+    Topology topology() {
+        if (_topology.size() != size()) {
+            return Topology.grid(size());
+        }
+        return _topology;
     }
 
     @Override
@@ -556,12 +919,11 @@ class Board {
      * @return boolean
      * */
     private boolean deepCheck(Board B) {
+        if (getClass() == Board.class && B.getClass() == Board.class) {
+            return _hash == B._hash && Arrays.equals(_cells, B._cells);
+        }
         for (int i = 0; i < this.numSquares(); i++) {
-            Square thisSquare = this.getBoard()[i];
-            Square objSquare = B.getBoard()[i];
-            if (thisSquare.getSpots() != objSquare.getSpots()
-                    || !thisSquare.getSide().toString().equals(
-                    objSquare.getSide().toString())) {
+            if (get(i) != B.get(i)) {
                 return false;
             }
         }
@@ -569,33 +931,33 @@ class Board {
     }
 
     /** Increases or decreases the color count given
-     * the side NEWSIDE and string OLDCOLOR.
+     * the side NEWSIDE and the previous side OLDSIDE.
      * @return int*/
-    private int colorCount(Side newSide, String oldColor) {
-        switch (newSide.toString()) {
-        case "white":
-            if (oldColor.equals("red")) {
+    private int colorCount(Side newSide, Side oldSide) {
+        switch (newSide) {
+        case WHITE:
+            if (oldSide == RED) {
                 _red -= 1;
                 _white += 1;
-            } else if (oldColor.equals("blue")) {
+            } else if (oldSide == BLUE) {
                 _blue -= 1;
                 _white += 1;
             }
             return _white;
-        case "red":
-            if (oldColor.equals("white")) {
+        case RED:
+            if (oldSide == WHITE) {
                 _white -= 1;
                 _red += 1;
-            } else if (oldColor.equals("blue")) {
+            } else if (oldSide == BLUE) {
                 _blue -= 1;
                 _red += 1;
             }
             return _red;
-        case "blue":
-            if (oldColor.equals("red")) {
+        case BLUE:
+            if (oldSide == RED) {
                 _red -= 1;
                 _blue += 1;
-            } else if (oldColor.equals("white")) {
+            } else if (oldSide == WHITE) {
                 _white -= 1;
                 _blue += 1;
             }
@@ -607,25 +969,102 @@ class Board {
 
     @Override
     public int hashCode() {
-        return getSpots();
+        return (int) (_hash ^ (_hash >>> 32));
+    }
+
+    /** Return the 64-bit Zobrist key of my contents.  Boards with equal
+     *  contents have equal keys; unequal boards almost never do.  The key
+     *  is kept up to date as squares change, so this takes constant time.
+     *  @return long
+     *  */
+    @Override
+    public long getHash() {
+        return _hash;
+    }
+
+    /** Return the Zobrist key for square #N holding packed contents CELL.
+     *  Instead of a table of random numbers, which would grow with the
+     *  board, the key is produced by the SplitMix64 finalizer, which is
+     *  as well distributed for this purpose. */
+    static long key(int n, byte cell) {
+        long z = (((long) n << 8 | cell) + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
     }
 
     /** Set my notifier to NOTIFY. */
     public void setNotifier(Consumer<Board> notify) {
+        setChangeNotifier((change) -> notify.accept(change.board()), 0);
+    }
+
+    /** Set my notifier to NOTIFY, which is told what changed once per
+     *  move, undo, or wholesale change.  If JUMPSPERNOTICE is positive,
+     *  NOTIFY is also told about the progress of a cascade after every
+     *  JUMPSPERNOTICE jumps. */
+    public void setChangeNotifier(Consumer<BoardChange> notify,
+                                  int jumpsPerNotice) {
         _notifier = notify;
-        announce();
+        _jumpsPerNotice = jumpsPerNotice;
+        _tracker = null;
+        announceAll();
     }
 
     /** Take any action that has been set for a change in my state. */
     private void announce() {
-        _notifier.accept(this);
+        if (_notifier == NOP) {
+            return;
+        }
+        int[] counts = { _white, _red, _blue, _spots };
+        if (_tracker == null || _tracker.numSquares() != numSquares()) {
+            _tracker = new ChangeTracker(numSquares(), counts);
+            _tracker.touchAll();
+        }
+        _notifier.accept(_tracker.finish(this, counts));
+    }
+
+    /** Take any action that has been set for a change to any or all of
+     *  my squares. */
+    private void announceAll() {
+        if (_tracker != null) {
+            _tracker.touchAll();
+        }
+        if (_listener != null) {
+            _listener.reload(this);
+        }
+        announce();
+    }
+
+    /** Have LISTENER (if not null) told of every change to my squares
+     *  from now on, starting with a reload, in place of any previous
+     *  listener.  Unlike the notifier, the listener is told of each
+     *  square as it changes, including during searches with makeMove
+     *  and unmakeMove, and it is kept when I am cleared. */
+    @Override
+    void setCellListener(CellListener listener) {
+        _listener = listener;
+        if (listener != null) {
+            listener.reload(this);
+        }
+    }
+
+    /** Return my cell listener, or null if none. */
+    @Override
+    CellListener cellListener() {
+        return _listener;
     }
 
-    /** Gets Board Array of squares.
+    /** Gets a freshly built array of the squares of this Board.  The
+     *  squares themselves are shared, immutable views of my packed cells,
+     *  so changing the array has no effect on me.
      * @return Square
      * */
     public Square[] getBoard() {
-        return _board;
+        Square[] result = new Square[numSquares()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = get(i);
+        }
+        return result;
     }
 
     /** Get the number of white squares on a board.
@@ -669,31 +1108,91 @@ class Board {
         if (newSpots <= 0) {
             throw new GameException("Not possible set value");
         } else {
-            _spots += (newSpots - _board[boardIndex].getSpots());
+            _spots += (newSpots - spotsOf(_cells[boardIndex]));
         }
     }
 
-    /** Gets the ArrayList of Square[] states for the board.
-     * @return ArrayList
+    /** Gets the undo history of the board.
+     * @return UndoJournal
      * */
-    public ArrayList<GameState> getHistory() {
+    public UndoJournal getHistory() {
         return _history;
     }
 
+    /** Number of low-order bits of a packed cell holding its spot count. */
+    private static final int SIDE_SHIFT = 5;
+
+    /** Mask extracting the spot count of a packed cell. */
+    private static final int SPOT_MASK = (1 << SIDE_SHIFT) - 1;
+
+    /** All sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+
+    /** Packed contents of a square in its initial state. */
+    private static final byte INITIAL_CELL = pack(WHITE, 1);
+
+    /** Return the packed cell for a square of color SIDE with SPOTS spots
+     *  (0 <= SPOTS <= SPOT_MASK). */
+    static byte pack(Side side, int spots) {
+        return (byte) ((side.ordinal() << SIDE_SHIFT) | spots);
+    }
+
+    /** Return the side of packed cell CELL. */
+    static Side sideOf(byte cell) {
+        return SIDES[cell >> SIDE_SHIFT];
+    }
+
+    /** Return the number of spots in packed cell CELL. */
+    static int spotsOf(byte cell) {
+        return cell & SPOT_MASK;
+    }
+
     /** A notifier that does nothing. */
-    private static final Consumer<Board> NOP = (s) -> { };
+    private static final Consumer<BoardChange> NOP = (s) -> { };
 
-    /** A read-only version of this Board. */
+    /** A read-only version of this Board, created when first needed. */
     private ConstantBoard _readonlyBoard;
 
-    /** Use _notifier.accept(B) to announce changes to this board. */
-    private Consumer<Board> _notifier;
+    /** Number of squares per snapshot chunk is 1 << CHUNK_SHIFT. */
+    private static final int CHUNK_SHIFT = BoardSnapshot.CHUNK_SHIFT;
+
+    /** Number of squares per snapshot chunk. */
+    private static final int CHUNK = BoardSnapshot.CHUNK;
+
+    /** The most recent snapshot of me, or null if there is none or my
+     *  size has changed since. */
+    private BoardSnapshot _published;
+
+    /** _dirtyChunks[c] is true iff a square in chunk c has changed since
+     *  _published was taken. */
+    private boolean[] _dirtyChunks;
+
+    /** True iff any of _dirtyChunks is true. */
+    private boolean _anyDirty;
+
+    /** Use _notifier.accept(C) to announce changes C to this board. */
+    private Consumer<BoardChange> _notifier;
+
+    /** Squares changed since the last announcement, or null if I have no
+     *  notifier. */
+    private ChangeTracker _tracker;
+
+    /** Told of each change to a square, or null. */
+    private CellListener _listener;
+
+    /** If positive, the number of jumps between announcements during a
+     *  cascade. */
+    private int _jumpsPerNotice;
 
     /** Size of the board. */
     private int _size;
 
-    /** The board containing squares of given size. */
-    private Square[] _board;
+    /** Neighbor and coordinate tables for boards of my size. */
+    private Topology _topology;
+
+    /** The contents of my squares in row-major order, each packed into
+     *  one byte by pack. */
+    private byte[] _cells;
 
     /** Count of the number of white squares on a board. */
     private int _white;
@@ -707,6 +1206,48 @@ class Board {
     /** Count of the number of spots on a board. */
     private int _spots;
 
-    /** ArrayList of Square[] states for the board. */
-    private ArrayList<GameState> _history;
+    /** Zobrist key of my contents: the exclusive or of key(n, cell) over
+     *  all squares n. */
+    private long _hash;
+
+    /** Initial capacity of _queue (a power of 2). */
+    private static final int INITIAL_QUEUE = 64;
+
+    /** Circular queue of over-full squares awaiting a jump, allocated on
+     *  the first jump.  Its length is always a power of 2. */
+    private int[] _queue;
+
+    /** Index of the first square in _queue. */
+    private int _head;
+
+    /** Number of squares in _queue. */
+    private int _count;
+
+    /** _queued[n] is true iff square #n is in _queue. */
+    private boolean[] _queued;
+
+    /** Number of jumps performed by the last set. */
+    private int _lastJumps;
+
+    /** Number of waves of jumps performed by the last set. */
+    private int _lastWaves;
+
+    /** A cascade hands over to _waveCascade, if not null, once at least
+     *  numSquares() >> WAVE_SHIFT squares are waiting to jump. */
+    private static final int WAVE_SHIFT = 4;
+
+    /** Engine for cascades involving much of the board, or null. */
+    private WaveCascade _waveCascade;
+    /** True iff _waveCascade was made by setWaveCascade(boolean, int). */
+    private boolean _ownWaves;
+
+    /** The squares as they were before _waveCascade ran. */
+    private byte[] _waveBefore;
+
+    /** My critical squares, or null if not asked for since my contents
+     *  were last replaced wholesale. */
+    private CriticalSquares _critical;
+
+    /** Changes made by each move, for undo. */
+    private UndoJournal _history;
 }
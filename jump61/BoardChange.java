@@ -0,0 +1,79 @@
+package jump61;
+
+import static jump61.Side.*;
+
+/** A description of how a Board changed since its previous notification:
+ *  which squares changed and the color and spot counts before and after.
+ *  Normally a Board sends one BoardChange per move (or undo); wholesale
+ *  changes such as clear and copy are reported as changes to the whole
+ *  board.
+ *  @author Ethan Ikegami
+ */
+final class BoardChange {
+
+    /** A change to BOARD affecting SQUARES, or every square if SQUARES is
+     *  null.  BEFORE and AFTER hold the white, red and blue square counts
+     *  followed by the spot count, before and after the change. */
+    BoardChange(Board board, int[] squares, int[] before, int[] after) {
+        _board = board;
+        _squares = squares;
+        _before = before;
+        _after = after;
+    }
+
+    /** Return the board that changed. */
+    Board board() {
+        return _board;
+    }
+
+    /** Return true iff any square may have changed, as after a clear or
+     *  copy. */
+    boolean wholeBoard() {
+        return _squares == null;
+    }
+
+    /** Return the numbers of the squares that changed, in the order they
+     *  were first changed.  If wholeBoard(), this is every square. */
+    int[] squares() {
+        if (_squares == null) {
+            int[] all = new int[_board.numSquares()];
+            for (int i = 0; i < all.length; i += 1) {
+                all[i] = i;
+            }
+            return all;
+        }
+        return _squares;
+    }
+
+    /** Return the number of squares of color SIDE before the change. */
+    int before(Side side) {
+        return _before[side.ordinal()];
+    }
+
+    /** Return the number of squares of color SIDE after the change. */
+    int after(Side side) {
+        return _after[side.ordinal()];
+    }
+
+    /** Return the total number of spots before the change. */
+    int spotsBefore() {
+        return _before[SPOTS];
+    }
+
+    /** Return the total number of spots after the change. */
+    int spotsAfter() {
+        return _after[SPOTS];
+    }
+
+    /** Index of the spot count in count arrays. */
+    static final int SPOTS = 3;
+
+    /** The board that changed. */
+    private final Board _board;
+    /** The changed squares, or null for all of them. */
+    private final int[] _squares;
+    /** Counts before the change. */
+    private final int[] _before;
+    /** Counts after the change. */
+    private final int[] _after;
+}
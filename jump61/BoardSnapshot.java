@@ -0,0 +1,125 @@
+package jump61;
+
+import static jump61.Side.*;
+
+/** An immutable picture of the contents of a Board at some moment, which
+ *  remains valid while the Board goes on changing.  The packed squares are
+ *  held in fixed-size chunks; successive snapshots of the same Board share
+ *  every chunk that did not change in between, so taking a snapshot costs
+ *  time proportional to the changes since the last one rather than to the
+ *  area of the board.  The chunks must never be modified.
+ *  @author Ethan Ikegami
+ */
+final class BoardSnapshot {
+
+    /** Number of squares per chunk is 1 << CHUNK_SHIFT. */
+    static final int CHUNK_SHIFT = 12;
+
+    /** Number of squares per chunk. */
+    static final int CHUNK = 1 << CHUNK_SHIFT;
+
+    /** A snapshot of a board with the given TOPOLOGY whose packed squares
+     *  are in CHUNKS, with the given color counts WHITE, RED, BLUE, total
+     *  SPOTS and Zobrist key HASH. */
+    BoardSnapshot(Topology topology, byte[][] chunks, int white, int red,
+                  int blue, int spots, long hash) {
+        _topology = topology;
+        _chunks = chunks;
+        _white = white;
+        _red = red;
+        _blue = blue;
+        _spots = spots;
+        _hash = hash;
+    }
+
+    /** Return the number of rows and of columns. */
+    int size() {
+        return _topology.size();
+    }
+
+    /** Return the number of squares. */
+    int numSquares() {
+        return _topology.numSquares();
+    }
+
+    /** Return the neighbor and coordinate tables for my size. */
+    Topology topology() {
+        return _topology;
+    }
+
+    /** Return the contents of square #N. */
+    Square get(int n) {
+        byte cell = cell(n);
+        return Square.square(Board.sideOf(cell), Board.spotsOf(cell));
+    }
+
+    /** Return the contents of the square at row R, column C. */
+    Square get(int r, int c) {
+        return get((r - 1) * _topology.cols() + c - 1);
+    }
+
+    /** Return the packed contents of square #N. */
+    byte cell(int n) {
+        return _chunks[n >> CHUNK_SHIFT][n & (CHUNK - 1)];
+    }
+
+    /** Return my chunks of packed squares.  Not to be modified. */
+    byte[][] chunks() {
+        return _chunks;
+    }
+
+    /** Return the number of white squares. */
+    int getWhite() {
+        return _white;
+    }
+
+    /** Return the number of red squares. */
+    int getRed() {
+        return _red;
+    }
+
+    /** Return the number of blue squares. */
+    int getBlue() {
+        return _blue;
+    }
+
+    /** Return the total number of spots. */
+    int getSpots() {
+        return _spots;
+    }
+
+    /** Return the Zobrist key of the board when I was taken. */
+    long getHash() {
+        return _hash;
+    }
+
+    /** Return the side to move, as for Board.whoseMove. */
+    Side whoseMove() {
+        return ((_spots + numSquares()) & 1) == 0 ? RED : BLUE;
+    }
+
+    /** Return the winner, as for Board.getWinner. */
+    Side getWinner() {
+        if (_blue == numSquares()) {
+            return BLUE;
+        } else if (_red == numSquares()) {
+            return RED;
+        } else {
+            return null;
+        }
+    }
+
+    /** Return a new, modifiable Board with my contents. */
+    Board toBoard() {
+        return new Board(this);
+    }
+
+    /** Neighbor and coordinate tables. */
+    private final Topology _topology;
+    /** Packed squares, CHUNK to a chunk. */
+    private final byte[][] _chunks;
+    /** Color counts and total spots. */
+    private final int _white, _red, _blue, _spots;
+    /** Zobrist key. */
+    private final long _hash;
+}
@@ -2,6 +2,11 @@ package jump61;
 
 import static jump61.Side.*;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.IntStream;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -132,6 +137,49 @@ public class BoardTest {
         assertEquals(cPrint, C.toString());
     }
 
+    @Test
+    public void copyTest() {
+        Board C = new Board(5);
+        C.addSpot(RED, 1, 1);
+        C.addSpot(BLUE, 5, 5);
+        C.addSpot(RED, 1, 1);
+        Board D = new Board(C);
+        assertEquals(C.toString(), D.toString());
+        assertEquals(true, D.equals(C));
+        assertEquals(C.numOfSide(RED), D.numOfSide(RED));
+        assertEquals(C.numPieces(), D.numPieces());
+        D.addSpot(BLUE, 5, 5);
+        assertEquals(false, D.equals(C));
+        assertEquals(2, C.get(5, 5).getSpots());
+        Board E = new Board(new ConstantBoard(C));
+        assertEquals(true, E.equals(C));
+        assertEquals(C.numOfSide(WHITE), E.numOfSide(WHITE));
+    }
+
+    @Test
+    public void readonlyTest() {
+        for (int N : new int[] { 4, 8 }) {
+            Board B = new Board(N);
+            B.addSpot(RED, N, N);
+            B.addSpot(BLUE, 1, N);
+            Board R = B.readonlyBoard();
+            assertEquals(N * N, R.numSquares());
+            assertEquals(N, R.rows());
+            assertEquals(N, R.cols());
+            assertEquals(B.get(N, N), R.get(N, N));
+            assertEquals(N * N - 1, R.sqNum(N, N));
+            assertEquals(N, R.row(N * N - 1));
+            assertEquals(N, R.col(N * N - 1));
+            assertEquals(3, R.neighbors(N, 2));
+            assertEquals(B.toString(), R.toString());
+            assertEquals(true, R.equals(B));
+            assertEquals(true, B.equals(R));
+            B.addSpot(RED, 2, 2);
+            assertEquals(2, R.get(2, 2).getSpots());
+            assertEquals(B.toString(), R.toString());
+        }
+    }
+
     @Test
     public void equalsTest() {
         Board C = new Board(9);
@@ -155,6 +203,33 @@ public class BoardTest {
         assertEquals(false, C.equals(D));
     }
 
+    @Test
+    public void hashTest() {
+        Board A = new Board(5);
+        Board B = new Board(5);
+        long start = A.getHash();
+        A.addSpot(RED, 1, 1);
+        A.addSpot(BLUE, 5, 5);
+        A.addSpot(RED, 1, 1);
+        B.addSpot(RED, 1, 2);
+        B.addSpot(BLUE, 5, 5);
+        B.addSpot(RED, 1, 2);
+        assertEquals(A.numPieces(), B.numPieces());
+        assertNotEquals(A.getHash(), B.getHash());
+        assertEquals(false, A.equals(B));
+        B.undo();
+        B.undo();
+        B.undo();
+        assertEquals(start, B.getHash());
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 5, 5);
+        B.addSpot(RED, 1, 1);
+        assertEquals(A.getHash(), B.getHash());
+        assertEquals(A.hashCode(), B.hashCode());
+        assertEquals(A.getHash(), new Board(A).getHash());
+        assertEquals(A.getHash(), new Board(new ConstantBoard(A)).getHash());
+    }
+
     @Test
     public void addSpotTest() {
         Board C = new Board(9);
@@ -212,6 +287,57 @@ public class BoardTest {
         C.undo();
         String b = C.toString();
         assertEquals(true, a.equals(b));
+
+        Board D = new Board(4);
+        D.addSpot(RED, 1, 1);
+        try {
+            D.set(2, 2, 0, RED);
+            fail("Empty set accepted.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+        D.undo();
+        assertEquals(new Board(4).toString(), D.toString());
+    }
+
+    @Test
+    public void undoCountsTest() {
+        Board C = new Board(4);
+        C.addSpot(RED, 1, 1);
+        C.addSpot(BLUE, 2, 2);
+        C.undo();
+        assertEquals(17, C.numPieces());
+        assertEquals(1, C.numOfSide(RED));
+        assertEquals(0, C.numOfSide(BLUE));
+        assertEquals(15, C.numOfSide(WHITE));
+        assertEquals(BLUE, C.whoseMove());
+    }
+
+    @Test
+    public void undoLimitTest() {
+        Board C = new Board(4);
+        C.setUndoLimit(2);
+        C.addSpot(RED, 1, 1);
+        for (int k = 0; k < 5; k += 1) {
+            C.addSpot(BLUE, 4, 4);
+            C.addSpot(RED, 1, 1);
+        }
+        assertTrue(C.getHistory().size() <= 4);
+        assertTrue(C.getHistory().size() >= 2);
+        Board B = new Board(C);
+        C.addSpot(BLUE, 4, 4);
+        C.addSpot(RED, 1, 1);
+        C.undo();
+        C.undo();
+        assertEquals(B.toString(), C.toString());
+        assertEquals(B.numPieces(), C.numPieces());
+        Board D = new Board(4);
+        D.addSpot(RED, 1, 1);
+        D.addSpot(BLUE, 4, 4);
+        D.undo();
+        D.undo();
+        assertEquals(true, D.equals(new Board(4)));
+        assertEquals(16, D.numPieces());
     }
 
     @Test
@@ -260,6 +386,155 @@ public class BoardTest {
         assertArrayEquals(e, new int[]{4, 6, 1, 9});
     }
 
+    @Test
+    public void topologyTest() {
+        Board B = new Board(4);
+        Board C = new Board(4);
+        assertSame(B.topology(), C.topology());
+        Topology T = B.topology();
+        int total;
+        total = 0;
+        for (int n = 0; n < B.numSquares(); n += 1) {
+            assertEquals(B.neighbors(B.row(n), B.col(n)), T.degree(n));
+            assertEquals(n / 4 + 1, T.row(n));
+            assertEquals(n % 4 + 1, T.col(n));
+            total += T.degree(n);
+        }
+        assertEquals(48, total);
+        assertEquals(total, T.adjacency().length);
+
+        Topology[] made = IntStream.range(0, 64).parallel()
+            .mapToObj(i -> Topology.rectangle(37, 53))
+            .toArray(Topology[]::new);
+        for (Topology layout : made) {
+            assertSame(made[0], layout);
+        }
+    }
+
+    @Test
+    public void layoutTest() {
+        Topology[] layouts = {
+            Topology.rectangle(3, 5), Topology.torus(4, 3),
+            Topology.hex(5, 4), Topology.rectangle(1, 6)
+        };
+        assertSame(Topology.grid(4), Topology.rectangle(4, 4));
+        for (int n = 0; n < 12; n += 1) {
+            assertEquals(4, layouts[1].degree(n));
+        }
+        assertEquals(6, layouts[2].degree(5));
+        assertEquals(2, layouts[2].degree(0));
+        assertEquals(5, layouts[2].degree(4));
+        Random rand = new Random(14);
+        for (Topology T : layouts) {
+            for (int n = 0; n < T.numSquares(); n += 1) {
+                for (int k = T.offsets()[n]; k < T.offsets()[n + 1]; k += 1) {
+                    int m = T.adjacency()[k];
+                    int back;
+                    for (back = T.offsets()[m]; T.adjacency()[back] != n;
+                         back += 1) {
+                        assertTrue(back < T.offsets()[m + 1]);
+                    }
+                }
+            }
+            Board B = new Board(T);
+            assertEquals(T.rows(), B.rows());
+            assertEquals(T.cols(), B.cols());
+            assertEquals(RED, B.whoseMove());
+            int moves = 0;
+            while (B.getWinner() == null) {
+                int n = rand.nextInt(B.numSquares());
+                if (B.isLegal(B.whoseMove(), n)) {
+                    B.addSpot(B.whoseMove(), n);
+                    moves += 1;
+                    checkCritical(B);
+                    assertEquals(new Board(B).getHash(), B.getHash());
+                }
+            }
+            for (; moves > 0; moves -= 1) {
+                B.undo();
+            }
+            assertEquals(new Board(T).toString(), B.toString());
+        }
+    }
+
+    @Test
+    public void codecTest() {
+        Random rand = new Random(15);
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        Board into = new Board(3);
+        Topology[] layouts = {
+            Topology.grid(6), Topology.grid(5), Topology.rectangle(3, 7),
+            Topology.torus(4, 4), Topology.hex(5, 5), Topology.grid(130)
+        };
+        for (Topology T : layouts) {
+            Board B = new Board(T);
+            for (int k = 0; k < 3 * T.numSquares(); k += 1) {
+                int n = rand.nextInt(B.numSquares());
+                if (B.getWinner() == null && B.isLegal(B.whoseMove(), n)) {
+                    B.addSpot(B.whoseMove(), n);
+                }
+            }
+            byte[] data = PositionCodec.encode(B);
+            assertEquals(PositionCodec.encodedLength(B), data.length);
+            Board D = PositionCodec.decode(data);
+            assertEquals(B.toString(), D.toString());
+            assertEquals(B.getHash(), D.getHash());
+            assertEquals(B.numOfSide(RED), D.numOfSide(RED));
+            assertEquals(B.whoseMove(), D.whoseMove());
+            assertSame(T, D.topology());
+            String text = PositionCodec.toText(B);
+            assertEquals(B.toString(), PositionCodec.fromText(text).toString());
+            if (data.length <= buf.capacity()) {
+                buf.clear();
+                PositionCodec.write(B, buf);
+                PositionCodec.write(B, buf);
+                buf.flip();
+                PositionCodec.read(buf, into);
+                assertEquals(B.toString(), into.toString());
+                PositionCodec.read(buf, into);
+                assertEquals(B.getHash(), into.getHash());
+                assertFalse(buf.hasRemaining());
+            }
+        }
+        assertEquals(19, PositionCodec.encode(new Board(6)).length);
+        assertEquals("2/0000", PositionCodec.toText(new Board(2)));
+        try {
+            PositionCodec.decode(new byte[] { 6, 0, 0 });
+            fail("Truncated position accepted.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+        try {
+            PositionCodec.fromText("2/0080");
+            fail("Bad square accepted.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+        Board pale = new Board(3);
+        pale.loadCell(4, Board.pack(WHITE, 2));
+        pale.finishLoad();
+        try {
+            PositionCodec.encode(pale);
+            fail("White square with two spots encoded.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+        try {
+            PositionCodec.toText(pale);
+            fail("White square with two spots encoded.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+        Board view = new Board(6).readonlyBoard();
+        try {
+            PositionCodec.read(ByteBuffer.wrap(PositionCodec.encode(view)),
+                               view);
+            fail("Read-only view accepted.");
+        } catch (GameException excp) {
+            /* Expected. */
+        }
+    }
+
     @Test
     public void jumpTest() {
         Board C = new Board();
@@ -299,6 +574,330 @@ public class BoardTest {
         assertEquals(a, C.toString());
     }
 
+    @Test
+    public void cascadeStatsTest() {
+        Board C = new Board(4);
+        C.set(1, 2, 3, RED);
+        assertEquals(0, C.lastJumps());
+        C.set(1, 1, 2, RED);
+        C.addSpot(RED, 1, 1);
+        assertEquals(2, C.lastJumps());
+        assertEquals(2, C.lastWaves());
+        assertEquals(2, C.get(1, 1).getSpots());
+        assertEquals(1, C.get(1, 2).getSpots());
+        assertEquals(2, C.get(1, 3).getSpots());
+        assertEquals(2, C.get(2, 2).getSpots());
+        assertEquals(RED, C.get(2, 2).getSide());
+        assertEquals(20, C.numPieces());
+    }
+
+    @Test
+    public void saturatedCascadeTest() {
+        Board C = new Board(10);
+        for (int n = 0; n < C.numSquares(); n += 1) {
+            C.set(C.row(n), C.col(n), C.neighbors(n),
+                  n % 2 == 0 ? RED : BLUE);
+        }
+        C.addSpot(RED, 5, 5);
+        assertEquals(RED, C.getWinner());
+        assertEquals(C.numSquares(), C.numOfSide(RED));
+        assertTrue(C.lastWaves() > 1);
+    }
+
+    @Test
+    public void changeNotifierTest() {
+        Board C = new Board(4);
+        ArrayList<BoardChange> changes = new ArrayList<>();
+        C.setChangeNotifier(changes::add, 0);
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).wholeBoard());
+        C.set(1, 2, 3, RED);
+        C.set(1, 1, 2, RED);
+        changes.clear();
+        C.addSpot(RED, 1, 1);
+        assertEquals(1, changes.size());
+        BoardChange change = changes.get(0);
+        assertSame(C, change.board());
+        assertArrayEquals(new int[] {0, 1, 4, 2, 5}, change.squares());
+        assertEquals(2, change.before(RED));
+        assertEquals(5, change.after(RED));
+        assertEquals(14, change.before(WHITE));
+        assertEquals(11, change.after(WHITE));
+        assertEquals(change.spotsBefore() + 1, change.spotsAfter());
+        changes.clear();
+        C.undo();
+        assertEquals(1, changes.size());
+        assertEquals(5, changes.get(0).squares().length);
+        assertEquals(2, changes.get(0).after(RED));
+
+        C.setChangeNotifier(changes::add, 1);
+        changes.clear();
+        C.addSpot(RED, 1, 1);
+        assertEquals(C.lastJumps() + 1, changes.size());
+        ArrayList<Board> boards = new ArrayList<>();
+        C.setNotifier(boards::add);
+        C.undo();
+        assertEquals(2, boards.size());
+        assertSame(C, boards.get(1));
+    }
+
+    @Test
+    public void largeBoardTest() {
+        Board C = new Board(300);
+        C.addSpot(RED, 150, 150);
+        C.addSpot(BLUE, 1, 1);
+        C.addSpot(RED, 150, 150);
+        C.addSpot(BLUE, 1, 1);
+        C.addSpot(RED, 150, 150);
+        C.addSpot(BLUE, 1, 1);
+        C.addSpot(RED, 150, 150);
+        assertEquals(1, C.lastJumps());
+        assertEquals(2, C.get(150, 151).getSpots());
+        StringBuilder dumped = new StringBuilder();
+        C.dump(dumped);
+        assertEquals(C.toString(), dumped.toString());
+        assertTrue(dumped.toString().startsWith("===" + "\n    2b 2b 1-"));
+        StringBuilder displayed = new StringBuilder();
+        C.display(displayed);
+        assertEquals(C.toDisplayString(), displayed.toString());
+    }
+
+    @Test
+    public void snapshotTest() {
+        Board C = new Board(100);
+        C.addSpot(RED, 1, 1);
+        BoardSnapshot first = C.snapshot();
+        String a = C.toString();
+        assertSame(first, C.snapshot());
+        C.addSpot(BLUE, 100, 100);
+        C.addSpot(RED, 1, 1);
+        BoardSnapshot second = C.snapshot();
+        assertEquals(a, first.toBoard().toString());
+        assertEquals(C.toString(), second.toBoard().toString());
+        assertEquals(C.getHash(), second.getHash());
+        assertEquals(RED, first.get(1, 1).getSide());
+        assertEquals(BLUE, second.get(100, 100).getSide());
+        assertEquals(WHITE, first.get(100, 100).getSide());
+        assertNotSame(first.chunks()[0], second.chunks()[0]);
+        assertSame(first.chunks()[1], second.chunks()[1]);
+        C.undo();
+        assertEquals(C.getHash(), C.snapshot().getHash());
+        assertEquals(C.whoseMove(), C.snapshot().whoseMove());
+    }
+
+    @Test
+    public void waveCascadeTest() {
+        Random rand = new Random(61);
+        for (int trial = 0; trial < 40; trial += 1) {
+            Board B = new Board(trial % 2 == 0 ? Topology.grid(12)
+                                : Topology.rectangle(9, 14));
+            for (int n = 0; n < B.numSquares(); n += 1) {
+                if (rand.nextInt(4) > 0) {
+                    B.set(B.row(n), B.col(n),
+                          1 + rand.nextInt(B.neighbors(n)),
+                          rand.nextBoolean() ? RED : BLUE);
+                }
+            }
+            Board W = new Board(B);
+            W.setWaveCascade(true);
+            String start = W.toString();
+            long startHash = W.getHash();
+            int n = rand.nextInt(B.numSquares());
+            B.set(B.row(n), B.col(n), B.neighbors(n), RED);
+            W.set(W.row(n), W.col(n), W.neighbors(n), RED);
+            B.addSpot(RED, n);
+            W.addSpot(RED, n);
+            assertEquals(B.numPieces(), W.numPieces());
+            assertEquals(W.numSquares(), W.numOfSide(RED)
+                         + W.numOfSide(BLUE) + W.numOfSide(WHITE));
+            if (B.getWinner() == null) {
+                assertNull(W.getWinner());
+                assertEquals(B.toString(), W.toString());
+                assertEquals(B.getHash(), W.getHash());
+                assertEquals(B.numOfSide(RED), W.numOfSide(RED));
+            } else {
+                assertEquals(RED, W.getWinner());
+            }
+            W.undo();
+            W.undo();
+            assertEquals(start, W.toString());
+            assertEquals(startHash, W.getHash());
+        }
+    }
+
+    @Test
+    public void vectorWaveTest() {
+        boolean present = ModuleLayer.boot()
+            .findModule("jdk.incubator.vector").isPresent();
+        assertEquals(present, WaveCascade.create().vectorized());
+    }
+
+    @Test
+    public void parallelCascadeTest() {
+        Random rand = new Random(62);
+        for (int trial = 0; trial < 40; trial += 1) {
+            Board W = new Board(15);
+            for (int n = 0; n < W.numSquares(); n += 1) {
+                W.set(W.row(n), W.col(n), 1 + rand.nextInt(W.neighbors(n)),
+                      rand.nextInt(3) > 0 ? RED : BLUE);
+            }
+            Board P = new Board(W);
+            ParallelWaveCascade waves =
+                new ParallelWaveCascade(new WaveCascade(), 1 + trial % 4, 15);
+            W.setWaveCascade(new WaveCascade());
+            P.setWaveCascade(waves);
+            int n = rand.nextInt(W.numSquares());
+            W.set(W.row(n), W.col(n), W.neighbors(n) + 1, RED);
+            P.set(P.row(n), P.col(n), P.neighbors(n) + 1, RED);
+            assertEquals(W.toString(), P.toString());
+            assertEquals(W.getHash(), P.getHash());
+            assertEquals(W.lastJumps(), P.lastJumps());
+            assertEquals(W.numOfSide(BLUE), P.numOfSide(BLUE));
+            P.setWaveCascade(null);
+            assertFalse(waves.closed());
+            waves.close();
+        }
+    }
+
+    @Test
+    public void waveOwnershipTest() {
+        Board B = new Board(15);
+        B.setWaveCascade(true, 2);
+        ParallelWaveCascade first = (ParallelWaveCascade) B.waveCascade();
+        B.setWaveCascade(true, 2);
+        ParallelWaveCascade second = (ParallelWaveCascade) B.waveCascade();
+        assertTrue(first.closed());
+        assertFalse(second.closed());
+        B.setWaveCascade(false);
+        assertTrue(second.closed());
+        ParallelWaveCascade shared =
+            new ParallelWaveCascade(new WaveCascade(), 2);
+        B.setWaveCascade(shared);
+        B.setWaveCascade(true, 2);
+        assertFalse(shared.closed());
+        B.setWaveCascade(shared);
+        assertFalse(shared.closed());
+        shared.close();
+    }
+
+    @Test
+    public void makeMoveTest() {
+        Board C = new Board(5);
+        ArrayList<BoardChange> changes = new ArrayList<>();
+        C.setChangeNotifier(changes::add, 1);
+        changes.clear();
+        long start = C.getHash();
+        String a = C.toString();
+        int[] moves = { 0, 24, 0, 24, 0, 24, 1, 23, 1, 23, 1, 23, 1 };
+        Board D = new Board(5);
+        for (int m : moves) {
+            C.makeMove(C.whoseMove(), m);
+            D.addSpot(D.whoseMove(), m);
+            assertEquals(D.toString(), C.toString());
+            assertEquals(D.getHash(), C.getHash());
+        }
+        assertTrue(C.lastJumps() > 0);
+        for (int m : moves) {
+            C.unmakeMove();
+        }
+        assertEquals(a, C.toString());
+        assertEquals(start, C.getHash());
+        assertEquals(25, C.numPieces());
+        assertEquals(25, C.numOfSide(WHITE));
+        assertEquals(0, changes.size());
+    }
+
+    @Test
+    public void criticalTest() {
+        Random rand = new Random(12);
+        Board B = new Board(6);
+        checkCritical(B);
+        for (int game = 0; game < 20; game += 1) {
+            int moves = 0;
+            while (B.getWinner() == null) {
+                int n = rand.nextInt(B.numSquares());
+                if (B.isLegal(B.whoseMove(), n)) {
+                    B.addSpot(B.whoseMove(), n);
+                    moves += 1;
+                    checkCritical(B);
+                }
+            }
+            for (; moves > 0; moves -= 1) {
+                B.undo();
+                checkCritical(B);
+            }
+            B.setWaveCascade(game % 2 == 0);
+        }
+    }
+
+    @Test
+    public void bitBoardTest() {
+        Random rand = new Random(13);
+        assertTrue(new Board(6).searchCopy() instanceof BitBoard);
+        assertFalse(new Board(9).searchCopy() instanceof BitBoard);
+        for (int game = 0; game < 300; game += 1) {
+            Board B = new Board(2 + game % 7);
+            SearchBoard F = B.searchCopy();
+            int moves = 0;
+            while (B.getWinner() == null) {
+                int n = rand.nextInt(B.numSquares());
+                if (!B.isLegal(B.whoseMove(), n)) {
+                    assertFalse(F.isLegal(B.whoseMove(), n));
+                    continue;
+                }
+                assertTrue(F.isLegal(B.whoseMove(), n));
+                B.makeMove(B.whoseMove(), n);
+                F.makeMove(F.whoseMove(), n);
+                moves += 1;
+                assertEquals(B.getWinner(), F.getWinner());
+                assertEquals(new Board(F).getHash(), F.getHash());
+                if (B.getWinner() == null) {
+                    assertEquals(B.toString(), F.toString());
+                    assertEquals(B.getHash(), F.getHash());
+                    assertEquals(B.lastJumps(), F.lastJumps());
+                    assertEquals(B, new Board(F));
+                    for (Side side : Side.values()) {
+                        assertEquals(B.numOfSide(side), F.numOfSide(side));
+                        assertEquals(B.numCritical(side),
+                                     F.numCritical(side));
+                    }
+                }
+            }
+            for (; moves > 0; moves -= 1) {
+                F.unmakeMove();
+            }
+            assertEquals(new Board(B.size()).toString(), F.toString());
+            assertEquals(new Board(B.size()).getHash(), F.getHash());
+        }
+
+        SearchBoard bits = new BitBoard(new Board(4));
+        bits.makeMove(RED, 0);
+        assertEquals(2, bits.get(0).getSpots());
+        Board plain = new Board(bits);
+        assertEquals(bits.toString(), plain.toString());
+        assertEquals(bits.getHash(), plain.getHash());
+        assertEquals(BLUE, plain.whoseMove());
+        SearchBoard twin = new BitBoard(new Board(6));
+        twin.copy(bits);
+        assertSame(bits.topology(), twin.topology());
+        assertEquals(bits.toString(), twin.toString());
+        assertEquals(bits.getHash(), twin.getHash());
+        twin.copy(new Board(5));
+        assertEquals(25, twin.numSquares());
+        assertEquals(new Board(5).getHash(), twin.getHash());
+        bits.unmakeMove();
+        assertEquals(new Board(4).toString(), bits.toString());
+        for (Topology T : new Topology[] { Topology.torus(4, 4),
+                                           Topology.grid(9) }) {
+            try {
+                new BitBoard(new Board(T));
+                fail("Unsuitable BitBoard accepted.");
+            } catch (GameException excp) {
+                /* Expected. */
+            }
+        }
+    }
+
     @Test
     public void fullGame() {
         try {
@@ -404,6 +1003,26 @@ public class BoardTest {
         System.out.println(a.getRed());
     }
 
+    /** Check that B's critical squares agree with its contents. */
+    private void checkCritical(Board B) {
+        for (Side side : Side.values()) {
+            boolean[] listed = new boolean[B.numSquares()];
+            for (int k = 0; k < B.numCritical(side); k += 1) {
+                int n = B.critical(side, k);
+                assertFalse(listed[n]);
+                listed[n] = true;
+            }
+            for (int n = 0; n < B.numSquares(); n += 1) {
+                boolean critical = B.get(n).getSide() == side
+                    && B.get(n).getSpots() == B.neighbors(n);
+                assertEquals(critical, listed[n]);
+                if (critical) {
+                    assertTrue(B.isCritical(n));
+                }
+            }
+        }
+    }
+
     /** Checks that B conforms to the description given by CONTENTS.
      *  CONTENTS should be a sequence of groups of 4 items:
      *  r, c, n, s, where r and c are row and column number of a square of B,
@@ -47,17 +47,18 @@ class BoardWidget extends Pad {
      *  responds to events, and the display thread).  We don't want the
      *  saved copy of our Board to change while it is being displayed. */
 
-    /** Update my display to show BOARD.  Here, we save a copy of
+    /** Update my display to show BOARD.  Here, we save a snapshot of
      *  BOARD (so that we can deal with changes to it only when we are ready
      *  for them), and recompute the size of the displayed board. */
     synchronized void update(Board board) {
-        if (board.equals(_board)) {
+        if (_board != null && _board.size() == board.size()
+            && _board.getHash() == board.getHash()) {
             return;
         }
         if (_board != null && _board.size() != board.size()) {
             invalidate();
         }
-        _board = new Board(board);
+        _board = board.snapshot();
         _side = _board.size() * SQUARE_SEP + SEPARATOR_SIZE;
         _widthHeight = _board.size();
     }
@@ -138,23 +139,11 @@ class BoardWidget extends Pad {
     /** Draw the grid lines on G. */
     private void drawGrid(Graphics2D g) {
         g.setColor(SPOT_COLOR);
+        Topology topology = _board.topology();
         for (int i = 0; i < _board.numSquares(); i++) {
-            switch (_board.getBoard()[i].getSpots()) {
-            case 1:
-                displaySpots(g, _board.row(i), _board.col(i), 1);
-                break;
-            case 2:
-                displaySpots(g, _board.row(i), _board.col(i), 2);
-                break;
-            case 3:
-                displaySpots(g, _board.row(i), _board.col(i), 3);
-                break;
-            case 4:
-                displaySpots(g, _board.row(i), _board.col(i), 4);
-                break;
-            case 5:
-                displaySpots(g, _board.row(i), _board.col(i), 5);
-                break;
+            int spots = _board.get(i).getSpots();
+            if (spots >= 1 && spots <= 5) {
+                displaySpots(g, topology.row(i), topology.col(i), spots);
             }
         }
     }
@@ -212,8 +201,8 @@ class BoardWidget extends Pad {
         _commandQueue.offer(String.format("%d %d", r + 1, c + 1));
     }
 
-    /** The Board I am displaying. */
-    private Board _board;
+    /** The snapshot of the Board I am displaying. */
+    private BoardSnapshot _board;
     /** Dimension in pixels of one side of the board. */
     private int _side;
     /** Destination for commands derived from mouse clicks. */
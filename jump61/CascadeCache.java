@@ -0,0 +1,180 @@
+package jump61;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A bounded memo of the outcomes of moves, so that a search that makes
+ *  the same move from the same position again (in a later iteration, or
+ *  in a sibling subtree reached by transposition) replays the squares it
+ *  changed instead of running its cascade again.  Entries are keyed by
+ *  the position's hash (Board.getHash) and the square moved to, and hold
+ *  the squares the move changed and their new contents.  Only moves whose
+ *  cascades have at least a given number of jumps are kept, since
+ *  replaying a small move saves nothing.
+ *
+ *  The memo may be shared by any number of threads.  It is divided into
+ *  sets of WAYS entries, one set per key, and a full set evicts by the
+ *  CLOCK rule: each entry's reference bit is set when it is used, and
+ *  the set's hand passes over (and clears) set bits until it finds an
+ *  entry whose bit is clear.  Counts of hits and misses are kept.
+ *
+ *  Outcomes are recorded from the undo history of plain Boards.  Other
+ *  boards (BitBoards, whose cascades are already cheap) simply make
+ *  their moves.
+ *  @author Ethan Ikegami
+ */
+final class CascadeCache {
+
+    /** Number of entries per set. */
+    static final int WAYS = 4;
+
+    /** A memo of about CAPACITY entries (rounded down to a power of two,
+     *  and at least WAYS), keeping moves of at least MINJUMPS jumps. */
+    CascadeCache(int capacity, int minJumps) {
+        if (capacity < 1 || minJumps < 1) {
+            throw new GameException("memo needs a positive capacity and "
+                                    + "number of jumps");
+        }
+        int sets = Math.max(1, Integer.highestOneBit(capacity) / WAYS);
+        _slots = new AtomicReferenceArray<>(sets * WAYS);
+        _hands = new int[sets];
+        _minJumps = minJumps;
+    }
+
+    /** Have PLAYER add a spot to square #N of BOARD, as for
+     *  BOARD.makeMove, replaying the outcome if I have it and otherwise
+     *  recording it if the cascade is long enough. */
+    void makeMove(SearchBoard board, Side player, int n) {
+        if (board.getClass() != Board.class) {
+            board.makeMove(player, n);
+            return;
+        }
+        long key = board.getHash();
+        Topology layout = board.topology();
+        int set = set(key, n);
+        for (int i = set; i < set + WAYS; i += 1) {
+            Entry entry = _slots.get(i);
+            if (entry != null && entry.matches(key, n, layout)) {
+                entry._referenced = true;
+                _hits.increment();
+                board.replayMove(entry._squares, entry._cells);
+                return;
+            }
+        }
+        _misses.increment();
+        board.makeMove(player, n);
+        if (board.lastJumps() >= _minJumps) {
+            insert(set, record((Board) board, key, n));
+        }
+    }
+
+    /** Return the number of moves replayed. */
+    long hits() {
+        return _hits.sum();
+    }
+
+    /** Return the number of moves that were not in the memo. */
+    long misses() {
+        return _misses.sum();
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _slots.length();
+    }
+
+    /** Remove all entries and reset the counts. */
+    void clear() {
+        for (int i = 0; i < _slots.length(); i += 1) {
+            _slots.set(i, null);
+        }
+        _hits.reset();
+        _misses.reset();
+    }
+
+    /** Return an entry for the move to square #N just made on BOARD from
+     *  the position with hash KEY, taken from BOARD's undo history. */
+    private static Entry record(Board board, long key, int n) {
+        UndoJournal history = board.getHistory();
+        int start = history.start(), count = history.end() - start;
+        int[] squares = new int[count];
+        byte[] cells = new byte[count];
+        for (int k = 0; k < count; k += 1) {
+            int sq = history.square(start + k);
+            Square now = board.get(sq);
+            squares[k] = sq;
+            cells[k] = Board.pack(now.getSide(), now.getSpots());
+        }
+        return new Entry(key, n, board.topology(), squares, cells);
+    }
+
+    /** Put ENTRY into the set starting at slot SET, evicting by the CLOCK
+     *  rule if the set is full.  Gives up if other threads keep changing
+     *  the set. */
+    private void insert(int set, Entry entry) {
+        int hand = _hands[set / WAYS];
+        for (int step = 0; step < 2 * WAYS; step += 1) {
+            int i = set + (hand + step) % WAYS;
+            Entry old = _slots.get(i);
+            if (old != null && old._referenced) {
+                old._referenced = false;
+            } else if (_slots.compareAndSet(i, old, entry)) {
+                _hands[set / WAYS] = (hand + step + 1) % WAYS;
+                return;
+            }
+        }
+    }
+
+    /** Return the first slot of the set for the move to square #N from
+     *  the position with hash KEY. */
+    private int set(long key, int n) {
+        long h = (key ^ (n * 0x9e3779b97f4a7c15L)) * 0xbf58476d1ce4e5b9L;
+        return ((int) (h >>> 32) & (_hands.length - 1)) * WAYS;
+    }
+
+    /** The outcome of one move. */
+    private static final class Entry {
+
+        /** The outcome of the move to square #SQUARE from the position
+         *  with hash KEY on a board laid out as LAYOUT, which set each
+         *  square SQUARES[k] to CELLS[k]. */
+        Entry(long key, int square, Topology layout, int[] squares,
+              byte[] cells) {
+            _key = key;
+            _square = square;
+            _layout = layout;
+            _squares = squares;
+            _cells = cells;
+        }
+
+        /** Return true iff I am the outcome of the move to square #N from
+         *  the position with hash KEY on a board laid out as LAYOUT. */
+        boolean matches(long key, int n, Topology layout) {
+            return _key == key && _square == n && _layout == layout;
+        }
+
+        /** Hash of the position moved from. */
+        private final long _key;
+        /** Square moved to. */
+        private final int _square;
+        /** Layout of the board. */
+        private final Topology _layout;
+        /** Squares changed. */
+        private final int[] _squares;
+        /** New packed contents of _squares. */
+        private final byte[] _cells;
+        /** Reference bit for the CLOCK rule. */
+        private volatile boolean _referenced;
+    }
+
+    /** The entries, in sets of WAYS. */
+    private final AtomicReferenceArray<Entry> _slots;
+    /** The CLOCK hand (0 <= hand < WAYS) of each set.  Races between
+     *  threads updating one only affect which entry is evicted. */
+    private final int[] _hands;
+    /** Fewest jumps of a move worth recording. */
+    private final int _minJumps;
+    /** Counts of moves replayed and not found. */
+    private final LongAdder _hits = new LongAdder(),
+        _misses = new LongAdder();
+}
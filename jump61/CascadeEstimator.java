@@ -0,0 +1,215 @@
+package jump61;
+
+import java.util.Arrays;
+
+import static jump61.Side.*;
+
+/** A quick forecast of what a move would capture, for ordering and
+ *  pruning moves in a search without making them (much as static exchange
+ *  evaluation is used in chess).
+ *
+ *  A spot added to a square that is not critical captures nothing.  One
+ *  added to a critical square sets off a cascade through the chain of
+ *  critical squares connected to it, of either color, since each one
+ *  the cascade reaches jumps in turn.  The estimate is that every square
+ *  of that chain, and every neighbor of one, ends up the mover's.  It
+ *  ignores squares pushed over the edge by spots from two directions,
+ *  and so can fall short for long cascades, but (short of a win) every
+ *  square it counts is in fact captured.
+ *
+ *  In exact mode (see setExactLimit), a cascade of up to a given number
+ *  of jumps is instead played out on a private overlay of the squares
+ *  it touches, which gives exactly what the move would capture; longer
+ *  cascades fall back on the estimate.  Neither changes the board, and
+ *  neither allocates once its arrays have grown to the board's size.
+ *  @author Ethan Ikegami
+ */
+final class CascadeEstimator {
+
+    /** An estimator in estimating (not exact) mode. */
+    CascadeEstimator() {
+        _stamp = new int[0];
+        _work = new int[INITIAL_SIZE];
+    }
+
+    /** Play out cascades of at most LIMIT jumps exactly, or none if LIMIT
+     *  is 0. */
+    void setExactLimit(int limit) {
+        if (limit < 0) {
+            throw new GameException("limit must not be negative");
+        }
+        _exactLimit = limit;
+    }
+
+    /** Return the number of the opponent's squares that PLAYER would
+     *  capture by adding a spot to square #N of BOARD.  Assumes
+     *  BOARD.isLegal(PLAYER, N).  The spots on those squares are then
+     *  given by spots(). */
+    int estimate(SearchBoard board, Side player, int n) {
+        _squares = _spots = 0;
+        _exact = true;
+        if (!board.isCritical(n)) {
+            return 0;
+        }
+        prepare(board);
+        if (_exactLimit == 0 || !playOut(board, player, n)) {
+            _exact = false;
+            _squares = _spots = 0;
+            prepare(board);
+            chain(board, player, n);
+        }
+        return _squares;
+    }
+
+    /** Return the number of spots that were on the squares counted by the
+     *  last estimate. */
+    int spots() {
+        return _spots;
+    }
+
+    /** Return true iff the last estimate was exact. */
+    boolean exact() {
+        return _exact;
+    }
+
+    /** Start a new set of marks for BOARD's squares. */
+    private void prepare(SearchBoard board) {
+        Topology topology = board.topology();
+        if (topology != _topology) {
+            _topology = topology;
+            _stamp = new int[topology.numSquares()];
+            _spotsAt = new int[topology.numSquares()];
+            _sideAt = new byte[topology.numSquares()];
+            _current = 0;
+        }
+        _current += 1;
+        if (_current == 0) {
+            Arrays.fill(_stamp, 0);
+            _current = 1;
+        }
+    }
+
+    /** Count the opponent's squares, and their spots, in and beside the
+     *  chain of critical squares of BOARD that includes #N, as if PLAYER
+     *  captured them all. */
+    private void chain(SearchBoard board, Side player, int n) {
+        int[] offsets = _topology.offsets(), adjacency = _topology.adjacency();
+        Side opponent = player.opposite();
+        int[] work = _work;
+        int top = 0;
+        _stamp[n] = _current;
+        work[top++] = n;
+        while (top > 0) {
+            int sq = work[--top];
+            Square s = board.get(sq);
+            if (s.getSide() == opponent) {
+                _squares += 1;
+                _spots += s.getSpots();
+            }
+            if (!board.isCritical(sq)) {
+                continue;
+            }
+            for (int k = offsets[sq]; k < offsets[sq + 1]; k += 1) {
+                int i = adjacency[k];
+                if (_stamp[i] != _current) {
+                    _stamp[i] = _current;
+                    if (top == work.length) {
+                        work = _work = Arrays.copyOf(work, 2 * top);
+                    }
+                    work[top++] = i;
+                }
+            }
+        }
+    }
+
+    /** Play out the cascade from PLAYER's spot on square #N of BOARD on my
+     *  overlay, as Board would, setting the counts of captures.  Returns
+     *  false (with the counts unspecified) if it takes more than the
+     *  exact limit of jumps. */
+    private boolean playOut(SearchBoard board, Side player, int n) {
+        int[] degree = _topology.degrees();
+        int[] offsets = _topology.offsets(), adjacency = _topology.adjacency();
+        int numSquares = degree.length;
+        int owned = board.numOfSide(player);
+        byte mine = (byte) player.ordinal();
+        int[] work = _work;
+        int head = 0, count = 0, jumps = 0;
+        touch(board, n);
+        if (_sideAt[n] != mine) {
+            owned += 1;
+        }
+        _sideAt[n] = mine;
+        _spotsAt[n] += 1;
+        work[count++] = n;
+        while (head < count && owned < numSquares) {
+            int sq = work[head++];
+            if (_spotsAt[sq] <= degree[sq]) {
+                continue;
+            }
+            if (jumps == _exactLimit) {
+                return false;
+            }
+            jumps += 1;
+            _spotsAt[sq] -= degree[sq];
+            for (int k = offsets[sq]; k < offsets[sq + 1]; k += 1) {
+                int i = adjacency[k];
+                touch(board, i);
+                if (_sideAt[i] != mine) {
+                    owned += 1;
+                    if (_sideAt[i] != WHITE.ordinal()) {
+                        _squares += 1;
+                        _spots += board.get(i).getSpots();
+                    }
+                    _sideAt[i] = mine;
+                }
+                _spotsAt[i] += 1;
+                if (_spotsAt[i] == degree[i] + 1) {
+                    if (count == work.length) {
+                        work = _work = Arrays.copyOf(work, 2 * count);
+                    }
+                    work[count++] = i;
+                }
+            }
+            if (_spotsAt[sq] > degree[sq]) {
+                if (count == work.length) {
+                    work = _work = Arrays.copyOf(work, 2 * count);
+                }
+                work[count++] = sq;
+            }
+        }
+        return true;
+    }
+
+    /** Copy square #N of BOARD to my overlay if it is not there yet. */
+    private void touch(SearchBoard board, int n) {
+        if (_stamp[n] != _current) {
+            _stamp[n] = _current;
+            Square sq = board.get(n);
+            _sideAt[n] = (byte) sq.getSide().ordinal();
+            _spotsAt[n] = sq.getSpots();
+        }
+    }
+
+    /** Initial size of _work. */
+    private static final int INITIAL_SIZE = 64;
+
+    /** Largest number of jumps played out exactly (0 for none). */
+    private int _exactLimit;
+    /** Results of the last estimate. */
+    private int _squares, _spots;
+    /** True iff the last estimate was exact. */
+    private boolean _exact;
+    /** Layout of the board last estimated. */
+    private Topology _topology;
+    /** _stamp[n] == _current iff square #n has been reached, or is on the
+     *  overlay, in the current estimate. */
+    private int[] _stamp;
+    /** Stamp of the current estimate. */
+    private int _current;
+    /** Spots of each square on the overlay. */
+    private int[] _spotsAt;
+    /** Color ordinal of each square on the overlay. */
+    private byte[] _sideAt;
+    /** Stack or queue of squares to visit. */
+    private int[] _work;
+}
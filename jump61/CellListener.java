@@ -0,0 +1,37 @@
+package jump61;
+
+/** An observer of the squares of a Board, told of each square that a
+ *  move, cascade or undo changes, and of any wholesale change.  Boards
+ *  call it synchronously, in the thread changing them, so it must be
+ *  quick and must not change the board.
+ *  @author Ethan Ikegami
+ */
+interface CellListener {
+
+    /** Note that square #N has changed from packed contents OLD to CELL
+     *  (packed as by Board.pack). */
+    void cellChanged(int n, byte old, byte cell);
+
+    /** Note that any or all of the squares of BOARD may have changed,
+     *  including its layout. */
+    void reload(SearchBoard board);
+
+    /** Return a listener that passes everything it is told to FIRST and
+     *  then to SECOND. */
+    static CellListener both(CellListener first, CellListener second) {
+        return new CellListener() {
+            @Override
+            public void cellChanged(int n, byte old, byte cell) {
+                first.cellChanged(n, old, cell);
+                second.cellChanged(n, old, cell);
+            }
+
+            @Override
+            public void reload(SearchBoard board) {
+                first.reload(board);
+                second.reload(board);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,77 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** Collects the squares of a Board changed since its last notification,
+ *  each once, together with the counts in effect at that notification,
+ *  and packages them as BoardChanges.
+ *  @author Ethan Ikegami
+ */
+final class ChangeTracker {
+
+    /** A tracker for a board of NUMSQUARES squares, whose current counts
+     *  are COUNTS (white, red, blue, spots). */
+    ChangeTracker(int numSquares, int... counts) {
+        _stamp = new int[numSquares];
+        _squares = new int[Math.min(numSquares, INITIAL_SIZE)];
+        _current = 1;
+        _before = counts;
+    }
+
+    /** Return the number of squares for which I was made. */
+    int numSquares() {
+        return _stamp.length;
+    }
+
+    /** Note that square #N has changed. */
+    void touch(int n) {
+        if (_stamp[n] != _current) {
+            _stamp[n] = _current;
+            if (_count == _squares.length) {
+                _squares = Arrays.copyOf(_squares, 2 * _count);
+            }
+            _squares[_count] = n;
+            _count += 1;
+        }
+    }
+
+    /** Note that any square may have changed. */
+    void touchAll() {
+        _all = true;
+    }
+
+    /** Return a BoardChange for BOARD describing everything touched since
+     *  the last call, given that the counts are now COUNTS (white, red,
+     *  blue, spots), and start collecting afresh. */
+    BoardChange finish(Board board, int... counts) {
+        BoardChange result =
+            new BoardChange(board,
+                            _all ? null : Arrays.copyOf(_squares, _count),
+                            _before, counts);
+        _before = counts;
+        _count = 0;
+        _all = false;
+        _current += 1;
+        if (_current == 0) {
+            Arrays.fill(_stamp, 0);
+            _current = 1;
+        }
+        return result;
+    }
+
+    /** Initial capacity of _squares. */
+    private static final int INITIAL_SIZE = 64;
+
+    /** Squares touched since the last notification. */
+    private int[] _squares;
+    /** Number of squares in _squares. */
+    private int _count;
+    /** True iff touchAll was called since the last notification. */
+    private boolean _all;
+    /** Counts at the last notification. */
+    private int[] _before;
+    /** _stamp[n] == _current iff square #n is in _squares. */
+    private final int[] _stamp;
+    /** Stamp of the current notification. */
+    private int _current;
+}
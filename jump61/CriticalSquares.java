@@ -0,0 +1,95 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The critical squares of a board, grouped by color: those holding
+ *  exactly as many spots as they have neighbors, so that one more spot
+ *  makes them jump.  Each color's squares are kept in an unordered list,
+ *  with the position of every listed square recorded, so that adding,
+ *  removing, testing and counting take constant time and listing a
+ *  color's squares takes time proportional to their number.
+ *  @author Ethan Ikegami
+ */
+final class CriticalSquares {
+
+    /** The critical squares of the packed squares CELLS of a board with
+     *  topology TOPOLOGY. */
+    CriticalSquares(byte[] cells, Topology topology) {
+        _degree = topology.degrees();
+        _where = new int[cells.length];
+        Arrays.fill(_where, -1);
+        for (int s = 0; s < _squares.length; s += 1) {
+            _squares[s] = new int[INITIAL_SIZE];
+        }
+        for (int n = 0; n < cells.length; n += 1) {
+            if (Board.spotsOf(cells[n]) == _degree[n]) {
+                add(n, Board.sideOf(cells[n]).ordinal());
+            }
+        }
+    }
+
+    /** Return the number of critical squares of color SIDE. */
+    int count(Side side) {
+        return _counts[side.ordinal()];
+    }
+
+    /** Return critical square #K (0 <= K < count(SIDE)) of color SIDE.
+     *  The order of the squares is arbitrary and changes as the board
+     *  does. */
+    int get(Side side, int k) {
+        return _squares[side.ordinal()][k];
+    }
+
+    /** Return true iff square #N is critical. */
+    boolean contains(int n) {
+        return _where[n] >= 0;
+    }
+
+    /** Note that square #N, which held packed contents OLD, now holds
+     *  CELL. */
+    void update(int n, byte old, byte cell) {
+        if (old == cell) {
+            return;
+        }
+        if (_where[n] >= 0) {
+            remove(n, Board.sideOf(old).ordinal());
+        }
+        if (Board.spotsOf(cell) == _degree[n]) {
+            add(n, Board.sideOf(cell).ordinal());
+        }
+    }
+
+    /** Add square #N to the list for color number S. */
+    private void add(int n, int s) {
+        if (_counts[s] == _squares[s].length) {
+            _squares[s] = Arrays.copyOf(_squares[s], 2 * _counts[s]);
+        }
+        _where[n] = _counts[s];
+        _squares[s][_counts[s]] = n;
+        _counts[s] += 1;
+    }
+
+    /** Remove square #N from the list for color number S, moving the
+     *  last square of that list into its place. */
+    private void remove(int n, int s) {
+        int k = _where[n];
+        _counts[s] -= 1;
+        int last = _squares[s][_counts[s]];
+        _squares[s][k] = last;
+        _where[last] = k;
+        _where[n] = -1;
+    }
+
+    /** Initial capacity of each list. */
+    private static final int INITIAL_SIZE = 16;
+
+    /** Number of neighbors of each square. */
+    private final int[] _degree;
+    /** Position of each square in its color's list, or -1 if it is not
+     *  critical. */
+    private final int[] _where;
+    /** Critical squares of each color, indexed by Side ordinal. */
+    private final int[][] _squares = new int[Side.values().length][];
+    /** Number of squares in each list of _squares. */
+    private final int[] _counts = new int[Side.values().length];
+}
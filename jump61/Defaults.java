@@ -14,4 +14,20 @@ class Defaults {
     /** Maximum number of squares on the side of a game board. */
     static final int MAX_BOARD_SIZE = 10;
 
+    /** Maximum number of squares on the side of a game board when large
+     *  boards are enabled. */
+    static final int MAX_LARGE_BOARD_SIZE = 2000;
+
+    /** Initial size in megabytes of the AI's transposition table. */
+    static final int TABLE_MEGABYTES = 16;
+
+    /** Number of plies searched by the AI for each move. */
+    static final int SEARCH_DEPTH = 4;
+
+    /** Number of move outcomes the AI remembers (see CascadeCache). */
+    static final int CASCADE_CACHE_ENTRIES = 1 << 14;
+
+    /** Fewest jumps in a move whose outcome the AI remembers. */
+    static final int CASCADE_CACHE_JUMPS = 16;
+
 }
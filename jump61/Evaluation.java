@@ -0,0 +1,111 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** A static evaluation of a board, kept up to date square by square as a
+ *  CellListener of the board, so that value takes constant time however
+ *  large the board.  Its terms, counted for each color, are the squares
+ *  owned, the spots on them, the critical squares (those that will jump
+ *  on receiving one more spot), and the corner and edge squares owned.
+ *  Corners are the squares with the fewest neighbors in the layout, and
+ *  edges those with more than that but fewer than the most; a torus has
+ *  neither.
+ *  @author Ethan Ikegami
+ */
+final class Evaluation implements CellListener {
+
+    /** Indices of the terms. */
+    static final int SQUARES = 0, SPOTS = 1, CRITICAL = 2, CORNERS = 3,
+        EDGES = 4;
+
+    /** Weight of each term, indexed by term. */
+    private static final int[] WEIGHTS = { 8, 1, 2, 3, 1 };
+
+    /** An evaluation of no board, to be attached with
+     *  Board.setCellListener. */
+    Evaluation() {
+        _terms = new int[WEIGHTS.length][Side.values().length];
+    }
+
+    /** Return the value of the board I follow to PLAYER: the weighted
+     *  sum of PLAYER's terms less that of its opponent's. */
+    int value(Side player) {
+        int p = player.ordinal(), q = player.opposite().ordinal();
+        int result;
+        result = 0;
+        for (int t = 0; t < WEIGHTS.length; t += 1) {
+            result += WEIGHTS[t] * (_terms[t][p] - _terms[t][q]);
+        }
+        return result;
+    }
+
+    /** Return term TERM (SQUARES, SPOTS, ...) of SIDE. */
+    int term(int term, Side side) {
+        return _terms[term][side.ordinal()];
+    }
+
+    @Override
+    public void cellChanged(int n, byte old, byte cell) {
+        count(n, old, -1);
+        count(n, cell, 1);
+    }
+
+    @Override
+    public void reload(SearchBoard board) {
+        Topology topology = board.topology();
+        if (topology != _topology) {
+            _topology = topology;
+            _degrees = topology.degrees();
+            _region = regions(topology);
+        }
+        for (int[] term : _terms) {
+            Arrays.fill(term, 0);
+        }
+        for (int n = 0; n < _degrees.length; n += 1) {
+            Square sq = board.get(n);
+            count(n, Board.pack(sq.getSide(), sq.getSpots()), 1);
+        }
+    }
+
+    /** Add SIGN times the contribution of square #N with packed contents
+     *  CELL to my terms. */
+    private void count(int n, byte cell, int sign) {
+        int s = Board.sideOf(cell).ordinal(), spots = Board.spotsOf(cell);
+        _terms[SQUARES][s] += sign;
+        _terms[SPOTS][s] += sign * spots;
+        if (spots == _degrees[n]) {
+            _terms[CRITICAL][s] += sign;
+        }
+        if (_region[n] != INTERIOR) {
+            _terms[_region[n]][s] += sign;
+        }
+    }
+
+    /** Return CORNERS, EDGES or INTERIOR for each square of TOPOLOGY. */
+    private static byte[] regions(Topology topology) {
+        int[] degrees = topology.degrees();
+        int least = Integer.MAX_VALUE, most = 0;
+        for (int degree : degrees) {
+            least = Math.min(least, degree);
+            most = Math.max(most, degree);
+        }
+        byte[] result = new byte[degrees.length];
+        for (int n = 0; n < degrees.length; n += 1) {
+            result[n] = (byte) (degrees[n] == most ? INTERIOR
+                                : degrees[n] == least ? CORNERS : EDGES);
+        }
+        return result;
+    }
+
+    /** Region of a square that is neither a corner nor an edge. */
+    private static final int INTERIOR = -1;
+
+    /** _terms[t][s] is term t of the side with ordinal s. */
+    private final int[][] _terms;
+    /** Layout of the board I follow. */
+    private Topology _topology;
+    /** Number of neighbors of each square. */
+    private int[] _degrees;
+    /** CORNERS, EDGES or INTERIOR for each square. */
+    private byte[] _region;
+}
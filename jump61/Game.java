@@ -14,9 +14,10 @@ class Game {
 
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
-        "auto", "board", "clear", "dump", "help", "manual",
+        "auto", "board", "clear", "dump", "help", "large", "manual",
         "new", "q", "quiet", "quit",
-        "seed", "set", "size", "start", "verbose",
+        "seed", "set", "size", "start", "table", "threads", "time",
+        "verbose",
     };
 
     /** A new Game that takes command/move input from INP, logs
@@ -30,9 +31,12 @@ class Game {
         _reporter = reporter;
         _logging = logging;
         _seed = (long) (Math.random() * Long.MAX_VALUE);
+        for (int i = 0; i < _clocks.length; i += 1) {
+            _clocks[i] = new SearchClock();
+        }
 
         _board = new Board(Defaults.BOARD_SIZE);
-        _readonlyBoard = new ConstantBoard(_board);
+        _readonlyBoard = _board.readonlyBoard();
         _board.setNotifier((b) -> _view.update(b));
     }
 
@@ -129,6 +133,18 @@ class Game {
         }
     }
 
+    /** Return true or false as SETTING is "on" or "off". */
+    boolean toOnOff(String setting) {
+        switch (setting) {
+        case "on":
+            return true;
+        case "off":
+            return false;
+        default:
+            throw error("expected on or off: %s", setting);
+        }
+    }
+
     /** Report a move by PLAYER to ROW COL. */
     void reportMove(int row, int col) {
         _reporter.announceMove(row, col);
@@ -147,8 +163,7 @@ class Game {
 
     /** Make the player of COLOR an AI for subsequent moves. */
     private void setAuto(Side color) {
-        setPlayer(color, new AI(this, color, _seed));
-        _seed += 1;
+        setPlayer(color, new SearchPlayer(this, color));
     }
 
     /** Make the player of COLOR take manual input from the user for
@@ -170,16 +185,30 @@ class Game {
     /** Clear the board to its initial state. */
     void clear() {
         _board.clear(_board.size());
+        startClocks();
     }
 
-    /** Print the current board using standard board-dump format. */
+    /** Print the current board using standard board-dump format.  Boards
+     *  larger than Defaults.MAX_BOARD_SIZE are streamed to the standard
+     *  output rather than built into one message. */
     private void dump() {
-        _reporter.msg(_board.toString());
+        if (_board.size() > Defaults.MAX_BOARD_SIZE) {
+            _board.dump(System.out);
+            System.out.println();
+        } else {
+            _reporter.msg(_board.toString());
+        }
     }
 
-    /** Print a board with row/column numbers. */
+    /** Print a board with row/column numbers, streaming it as for dump
+     *  if it is large. */
     private void printBoard() {
-        _reporter.msg(_board.toDisplayString());
+        if (_board.size() > Defaults.MAX_BOARD_SIZE) {
+            _board.display(System.out);
+            System.out.println();
+        } else {
+            _reporter.msg(_board.toDisplayString());
+        }
     }
 
     /** Print a help message. */
@@ -192,6 +221,69 @@ class Game {
         _seed = seed;
     }
 
+    /** Return the Searcher shared by the AIs of this game, whose
+     *  transposition table and CascadeCache are kept from move to move.
+     *  The cache only serves boards too large to search as BitBoards. */
+    Searcher searcher() {
+        if (_searcher == null) {
+            _searcher = new Searcher(new TranspositionTable(_tableMegabytes),
+                                     _searchThreads);
+            _searcher.setCascadeCache(
+                new CascadeCache(Defaults.CASCADE_CACHE_ENTRIES,
+                                 Defaults.CASCADE_CACHE_JUMPS));
+        }
+        return _searcher;
+    }
+
+    /** Return the time limits of the AI playing COLOR. */
+    SearchClock searchClock(Side color) {
+        return _clocks[color.ordinal()];
+    }
+
+    /** Limit each AI to MOVESECONDS per move and GAMESECONDS per game (0
+     *  for no limit). */
+    private void setTimeLimits(double moveSeconds, double gameSeconds) {
+        for (SearchClock clock : _clocks) {
+            clock.setLimits(moveSeconds, gameSeconds);
+        }
+    }
+
+    /** Restore each AI's whole game time limit, for a new game. */
+    private void startClocks() {
+        for (SearchClock clock : _clocks) {
+            clock.startGame();
+        }
+    }
+
+    /** Let each AI search with THREADS threads. */
+    private void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw error("need at least one search thread");
+        }
+        _searchThreads = threads;
+        discardSearcher();
+    }
+
+    /** Make the AIs' transposition table about MEGABYTES megabytes,
+     *  discarding its contents. */
+    private void setTableSize(int megabytes) {
+        if (megabytes < 0 || megabytes > TranspositionTable.MAX_MEGABYTES) {
+            throw error("table size must be between 0 and %d",
+                        TranspositionTable.MAX_MEGABYTES);
+        }
+        _tableMegabytes = megabytes;
+        discardSearcher();
+    }
+
+    /** Release the AIs' Searcher and its threads, so that the next
+     *  search uses a new one with the current settings. */
+    private void discardSearcher() {
+        if (_searcher != null) {
+            _searcher.close();
+            _searcher = null;
+        }
+    }
+
     /** Place SPOTS spots on square R:C and color the square red or
      *  blue depending on whether COLOR is "r" or "b".  If SPOTS is
      *  0, clears the square, ignoring COLOR.  SPOTS must be less than
@@ -207,13 +299,47 @@ class Game {
     }
 
     /** Stop any current game and set the board to an empty N x N board
-     *  with numMoves() == 0.  Requires 2 <= N <= 10. */
+     *  with numMoves() == 0.  Requires 2 <= N <= Defaults.MAX_BOARD_SIZE,
+     *  or 2 <= N <= Defaults.MAX_LARGE_BOARD_SIZE if large boards are
+     *  enabled. */
     private void setSize(int n) {
         log("size %d", n);
-        if (n < 2 || n > 10) {
-            throw error("size must be between 2 and 10");
+        int max = _largeBoards ? Defaults.MAX_LARGE_BOARD_SIZE
+            : Defaults.MAX_BOARD_SIZE;
+        if (n < 2 || n > max) {
+            throw error("size must be between 2 and %d", max);
         }
         _board.clear(n);
+        useWaves();
+        startClocks();
+    }
+
+    /** Allow board sizes up to Defaults.MAX_LARGE_BOARD_SIZE iff ON.
+     *  Turning large boards off returns a large board to the default
+     *  size. */
+    void setLargeBoards(boolean on) {
+        _largeBoards = on;
+        if (!on && _board.size() > Defaults.MAX_BOARD_SIZE) {
+            _board.clear(Defaults.BOARD_SIZE);
+        }
+        useWaves();
+    }
+
+    /** Resolve large cascades on the board in waves spread over all
+     *  processors iff it is larger than Defaults.MAX_BOARD_SIZE.  The
+     *  WaveCascade (and its threads) is made once and kept. */
+    private void useWaves() {
+        if (_board.size() <= Defaults.MAX_BOARD_SIZE) {
+            _board.setWaveCascade(null);
+            return;
+        }
+        if (_waves == null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            _waves = threads > 1
+                ? new ParallelWaveCascade(WaveCascade.create(), threads)
+                : WaveCascade.create();
+        }
+        _board.setWaveCascade(_waves);
     }
 
     /** Return the full, lower-case command name that uniquely fits
@@ -268,6 +394,9 @@ class Game {
             case "help":
                 help();
                 break;
+            case "large":
+                setLargeBoards(toOnOff(parts[1]));
+                break;
             case "manual":
                 setManual(toSide(parts[1]));
                 break;
@@ -290,6 +419,16 @@ class Game {
             case "size":
                 setSize(toInt(parts[1]));
                 break;
+            case "table":
+                setTableSize(toInt(parts[1]));
+                break;
+            case "threads":
+                setSearchThreads(toInt(parts[1]));
+                break;
+            case "time":
+                setTimeLimits(Double.parseDouble(parts[1]),
+                              Double.parseDouble(parts[2]));
+                break;
             case "verbose":
                 _verbose = true;
                 break;
@@ -341,11 +480,24 @@ class Game {
 
     /** True iff we should print the board after each move. */
     private boolean _verbose;
-    /** Current pseudo-random number seed.  Provided as an argument to AIs
-     *  that use a random element in their choices.  Incremented for each
-     *  AI to which it is supplied.
+    /** True iff board sizes up to Defaults.MAX_LARGE_BOARD_SIZE are
+     *  allowed. */
+    private boolean _largeBoards;
+    /** Current pseudo-random number seed, as set by the seed command.
+     *  The AIs search deterministically and do not use it.
      */
     private long _seed;
+    /** Resolves cascades on large boards, or null if not yet made. */
+    private WaveCascade _waves;
+    /** Shared searcher of the AIs, or null if not yet made. */
+    private Searcher _searcher;
+    /** Size of the transposition table of _searcher in megabytes. */
+    private int _tableMegabytes = Defaults.TABLE_MEGABYTES;
+    /** Number of threads each AI searches with. */
+    private int _searchThreads = Runtime.getRuntime().availableProcessors();
+    /** Time limits of the AIs, indexed by color (RED, BLUE). */
+    private final SearchClock[] _clocks =
+        new SearchClock[Side.values().length];
     /** When set to a non-negative value, indicates that play should terminate
      *  at the earliest possible point, returning _exit.  When negative,
      *  indicates that the session is not over. */
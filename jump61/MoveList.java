@@ -0,0 +1,103 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** A reusable list of moves, each a square number with an ordering
+ *  score, held in primitive arrays so that filling, sorting and reading
+ *  it allocates nothing once it has grown to the size needed.
+ *  @author Ethan Ikegami
+ */
+final class MoveList {
+
+    /** An empty list. */
+    MoveList() {
+        _moves = new int[INITIAL_SIZE];
+        _scores = new int[INITIAL_SIZE];
+    }
+
+    /** Return the number of moves in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return move #K (0 <= K < size()). */
+    int get(int k) {
+        return _moves[k];
+    }
+
+    /** Replace move #K (0 <= K < size()) with MOVE. */
+    void set(int k, int move) {
+        _moves[k] = move;
+    }
+
+    /** Return the score of move #K (0 <= K < size()). */
+    int score(int k) {
+        return _scores[k];
+    }
+
+    /** Set the score of move #K (0 <= K < size()) to SCORE. */
+    void setScore(int k, int score) {
+        _scores[k] = score;
+    }
+
+    /** Add MOVE, with score 0, to the end of me. */
+    void add(int move) {
+        if (_size == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _size);
+            _scores = Arrays.copyOf(_scores, 2 * _size);
+        }
+        _moves[_size] = move;
+        _scores[_size] = 0;
+        _size += 1;
+    }
+
+    /** Sort my moves by decreasing score, keeping moves with equal
+     *  scores in their present order. */
+    void sort() {
+        int[] moves = _moves, scores = _scores;
+        for (int i = 1; i < _size; i += 1) {
+            int move = moves[i], score = scores[i];
+            int j;
+            for (j = i; j > 0 && scores[j - 1] < score; j -= 1) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+            }
+            moves[j] = move;
+            scores[j] = score;
+        }
+    }
+
+    /** Keep only my first SIZE moves (0 <= SIZE <= size()). */
+    void truncate(int size) {
+        _size = size;
+    }
+
+    /** Remove all moves. */
+    void clear() {
+        _size = 0;
+    }
+
+    /** Replace my contents with the squares where PLAYER may legally
+     *  move on BOARD, in increasing order. */
+    void generate(SearchBoard board, Side player) {
+        clear();
+        if (!board.isLegal(player)) {
+            return;
+        }
+        for (int n = 0; n < board.numSquares(); n += 1) {
+            if (board.get(n).getSide() != player.opposite()) {
+                add(n);
+            }
+        }
+    }
+
+    /** Initial capacity. */
+    private static final int INITIAL_SIZE = 64;
+
+    /** The moves, in _moves[0 .. _size - 1]. */
+    private int[] _moves;
+    /** The score of each move in _moves. */
+    private int[] _scores;
+    /** Number of moves. */
+    private int _size;
+}
@@ -0,0 +1,116 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The order in which a search tries moves, from best to worst guess:
+ *  the move from the transposition table, then moves that set off a
+ *  cascade (onto a critical square, those that a CascadeEstimator
+ *  expects to capture more first), then the killer moves of the ply
+ *  (the last two quiet moves there that caused a cutoff), then the
+ *  others by their history scores (the sum, over cutoffs each has
+ *  caused, of the square of the remaining depth).  One MoveOrder serves
+ *  one thread.
+ *
+ *  I also count cutoffs, and those caused by the first move tried, whose
+ *  ratio measures how good the order is.
+ *  @author Ethan Ikegami
+ */
+final class MoveOrder {
+
+    /** An order for boards of no squares yet. */
+    MoveOrder() {
+        _killers = new int[2 * (Searcher.MAX_DEPTH + 1)];
+        _history = new int[0];
+    }
+
+    /** Prepare for a new search on boards of NUMSQUARES squares.  Killers
+     *  are forgotten and history scores halved (or cleared if the number
+     *  of squares has changed), and the counts of cutoffs reset. */
+    void newSearch(int numSquares) {
+        Arrays.fill(_killers, -1);
+        if (_history.length != numSquares) {
+            _history = new int[numSquares];
+        } else {
+            age();
+        }
+        _cutoffs = _firstCutoffs = 0;
+    }
+
+    /** Score and sort MOVES, the moves of the player to move on BOARD at
+     *  ply PLY, best first, with HASHMOVE (if not -1) at the front. */
+    void order(SearchBoard board, MoveList moves, int ply, int hashMove) {
+        Side player = board.whoseMove();
+        int killer0 = _killers[2 * ply], killer1 = _killers[2 * ply + 1];
+        for (int k = 0; k < moves.size(); k += 1) {
+            int n = moves.get(k);
+            int score;
+            if (n == hashMove) {
+                score = HASH;
+            } else if (board.isCritical(n)) {
+                score = CASCADE + _estimator.estimate(board, player, n);
+            } else if (n == killer0) {
+                score = KILLER + 1;
+            } else if (n == killer1) {
+                score = KILLER;
+            } else {
+                score = _history[n];
+            }
+            moves.setScore(k, score);
+        }
+        moves.sort();
+    }
+
+    /** Record that move #K of MOVES, the moves at ply PLY with DEPTH plies
+     *  left to search, caused a cutoff. */
+    void cutoff(MoveList moves, int k, int ply, int depth) {
+        _cutoffs += 1;
+        if (k == 0) {
+            _firstCutoffs += 1;
+        }
+        int move = moves.get(k);
+        if (moves.score(k) >= CASCADE) {
+            return;
+        }
+        if (_killers[2 * ply] != move) {
+            _killers[2 * ply + 1] = _killers[2 * ply];
+            _killers[2 * ply] = move;
+        }
+        _history[move] += depth * depth;
+        if (_history[move] >= MAX_HISTORY) {
+            age();
+        }
+    }
+
+    /** Return the number of cutoffs since the last newSearch. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of cutoffs since the last newSearch caused by
+     *  the first move tried. */
+    long firstCutoffs() {
+        return _firstCutoffs;
+    }
+
+    /** Halve all history scores. */
+    private void age() {
+        for (int n = 0; n < _history.length; n += 1) {
+            _history[n] >>= 1;
+        }
+    }
+
+    /** Scores of the kinds of move.  History scores stay below
+     *  MAX_HISTORY, and so below KILLER. */
+    private static final int
+        HASH = 1 << 30, CASCADE = 1 << 29, KILLER = 1 << 28,
+        MAX_HISTORY = 1 << 27;
+
+    /** Forecasts captures by cascades. */
+    private final CascadeEstimator _estimator = new CascadeEstimator();
+    /** The two killer moves of each ply, most recent first, or -1. */
+    private final int[] _killers;
+    /** History score of each square. */
+    private int[] _history;
+    /** Counts of cutoffs, and of those caused by the first move. */
+    private long _cutoffs, _firstCutoffs;
+}
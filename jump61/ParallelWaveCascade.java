@@ -0,0 +1,131 @@
+package jump61;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntBinaryOperator;
+
+/** A WaveCascade that divides each sweep of a big board into stripes of
+ *  whole rows and sweeps the stripes at the same time on a fork-join
+ *  pool.  Each wave's over-full squares are all found before any spots
+ *  move, so the flags a stripe reads from the rows beside it are those
+ *  of the previous sweep: spots cross stripe boundaries only between
+ *  sweeps, and the result does not depend on the number of threads or
+ *  the order in which stripes finish.
+ *  @author Ethan Ikegami
+ */
+final class ParallelWaveCascade extends WaveCascade {
+
+    /** A WaveCascade that sweeps each stripe with SWEEPER, using
+     *  THREADS threads. */
+    ParallelWaveCascade(WaveCascade sweeper, int threads) {
+        this(sweeper, threads, STRIPE);
+    }
+
+    /** A WaveCascade that sweeps each stripe with SWEEPER, using
+     *  THREADS threads, with stripes of at most STRIPESIZE squares (but
+     *  at least one row). */
+    ParallelWaveCascade(WaveCascade sweeper, int threads, int stripeSize) {
+        if (threads < 1 || stripeSize < 1) {
+            throw new GameException("Need at least one thread.");
+        }
+        _sweeper = sweeper;
+        _pool = new ForkJoinPool(threads);
+        _stripe = stripeSize;
+    }
+
+    @Override
+    boolean vectorized() {
+        return _sweeper.vectorized();
+    }
+
+    /** Return the number of threads I use. */
+    int threads() {
+        return _pool.getParallelism();
+    }
+
+    @Override
+    void close() {
+        _pool.shutdown();
+    }
+
+    /** Return true iff I have been closed. */
+    boolean closed() {
+        return _pool.isShutdown();
+    }
+
+    @Override
+    int fire(byte[] cells, byte[] capacity, byte[] fire, int N,
+             int from, int to) {
+        IntBinaryOperator sweep =
+            (lo, hi) -> _sweeper.fire(cells, capacity, fire, N, lo, hi);
+        if (to - from < 2 * _stripe) {
+            return sweep.applyAsInt(from, to);
+        }
+        return _pool.invoke(new Stripe(sweep, N, _stripe, from, to));
+    }
+
+    @Override
+    int spread(byte[] cells, byte[] capacity, byte[] fire, byte[] hasWest,
+               byte[] hasEast, int N, byte playerBits, int from, int to) {
+        IntBinaryOperator sweep =
+            (lo, hi) -> _sweeper.spread(cells, capacity, fire, hasWest,
+                                        hasEast, N, playerBits, lo, hi);
+        if (to - from < 2 * _stripe) {
+            return sweep.applyAsInt(from, to);
+        }
+        return _pool.invoke(new Stripe(sweep, N, _stripe, from, to));
+    }
+
+    /** A sweep over a stripe of whole rows, halved until each part has
+     *  at most a given number of squares or a single row.  Its value is
+     *  the sum of the counts returned by its parts. */
+    private static class Stripe extends RecursiveTask<Integer> {
+
+        /** A sweep over squares FROM through TO - 1 of a board with rows
+         *  WIDTH squares long, in parts of at most SIZE squares, where
+         *  SWEEP.applyAsInt(LO, HI) sweeps squares LO through HI - 1 and
+         *  returns a count. */
+        Stripe(IntBinaryOperator sweep, int width, int size,
+               int from, int to) {
+            _sweep = sweep;
+            _width = width;
+            _size = size;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            int mid = _from + (_to - _from) / (2 * _width) * _width;
+            if (_to - _from <= _size || mid == _from) {
+                return _sweep.applyAsInt(_from, _to);
+            }
+            Stripe upper = new Stripe(_sweep, _width, _size, _from, mid);
+            upper.fork();
+            int lower = new Stripe(_sweep, _width, _size, mid, _to).compute();
+            return lower + upper.join();
+        }
+
+        /** Sweeps a range of squares. */
+        private final IntBinaryOperator _sweep;
+        /** Length of a row. */
+        private final int _width;
+        /** Most squares to sweep without dividing. */
+        private final int _size;
+        /** Range of squares swept. */
+        private final int _from, _to;
+
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Default largest number of squares swept as one piece. */
+    static final int STRIPE = 1 << 15;
+
+    /** Sweeps each stripe. */
+    private final WaveCascade _sweeper;
+    /** Threads that sweep the stripes. */
+    private final ForkJoinPool _pool;
+    /** Largest number of squares swept as one piece. */
+    private final int _stripe;
+}
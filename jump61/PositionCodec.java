@@ -0,0 +1,277 @@
+package jump61;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static jump61.GameException.error;
+import static jump61.Side.*;
+
+/** Compact binary and text encodings of the contents of a Board.
+ *
+ *  The binary form is a header giving the layout followed by one 4-bit
+ *  code per square, two squares to a byte with the lower-numbered square
+ *  in the high half.  Code 0 is a white square (with its one spot), codes
+ *  1 - 7 are red squares with that many spots and codes 9 - 15 are blue
+ *  squares with 8 fewer spots.  The header is one byte, N, for an N x N
+ *  grid with N < 128, and otherwise the byte 0x80 plus the layout kind
+ *  (Topology.GRID, TORUS or HEX) followed by the number of rows and of
+ *  columns as two-byte unsigned numbers.  A 6 x 6 position thus takes 19
+ *  bytes.  The side to move follows from the number of spots.
+ *
+ *  The text form is a header (N for an N x N grid; otherwise "g", "t" or
+ *  "h" for the kind followed by ROWSxCOLS), a slash, and the squares'
+ *  codes as hexadecimal digits.
+ *
+ *  Writing to and reading into an existing Board of the same layout
+ *  through a ByteBuffer allocates nothing.
+ *  @author Ethan Ikegami
+ */
+final class PositionCodec {
+
+    /** Not to be instantiated. */
+    private PositionCodec() {
+    }
+
+    /** Return the number of bytes in the binary form of BOARD. */
+    static int encodedLength(Board board) {
+        Topology layout = board.topology();
+        return headerLength(layout.kind(), layout.rows(), layout.cols())
+            + (layout.numSquares() + 1) / 2;
+    }
+
+    /** Return the binary form of BOARD. */
+    static byte[] encode(Board board) {
+        ByteBuffer buf = ByteBuffer.allocate(encodedLength(board));
+        write(board, buf);
+        return buf.array();
+    }
+
+    /** Return a new Board whose contents are encoded in DATA. */
+    static Board decode(byte[] data) {
+        return read(ByteBuffer.wrap(data));
+    }
+
+    /** Put the binary form of BOARD into BUF, starting at its position
+     *  and advancing it.  BUF must have room for encodedLength(BOARD)
+     *  more bytes. */
+    static void write(Board board, ByteBuffer buf) {
+        Topology layout = board.topology();
+        int kind = layout.kind(), rows = layout.rows(), cols = layout.cols();
+        if (headerLength(kind, rows, cols) == 1) {
+            buf.put((byte) rows);
+        } else {
+            buf.put((byte) (LONG_HEADER | kind));
+            buf.putShort((short) rows);
+            buf.putShort((short) cols);
+        }
+        int numSquares = layout.numSquares();
+        for (int n = 0; n < numSquares; n += 2) {
+            int high = code(Board.cellOf(board, n));
+            int low = n + 1 < numSquares ? code(Board.cellOf(board, n + 1)) : 0;
+            buf.put((byte) (high << 4 | low));
+        }
+    }
+
+    /** Return a new Board with the contents whose binary form starts at
+     *  the position of BUF, advancing BUF past it. */
+    static Board read(ByteBuffer buf) {
+        int mark = buf.position();
+        Board board = new Board(readLayout(buf));
+        buf.position(mark);
+        read(buf, board);
+        return board;
+    }
+
+    /** Replace the contents of BOARD with those whose binary form starts
+     *  at the position of BUF, advancing BUF past it.  BOARD's undo
+     *  history is cleared.  BOARD must be a plain Board, not a view
+     *  (others are rejected with a GameException).  If BOARD already
+     *  has the layout of the encoded position, this allocates nothing;
+     *  otherwise BOARD is first cleared to that layout.  After a
+     *  GameException reporting bad data, the contents of BOARD are
+     *  unspecified. */
+    static void read(ByteBuffer buf, Board board) {
+        if (board.getClass() != Board.class) {
+            throw new GameException("Can only read into a plain Board.");
+        }
+        try {
+            int kind, rows, cols;
+            int head = buf.get() & 0xff;
+            if ((head & LONG_HEADER) == 0) {
+                kind = Topology.GRID;
+                rows = cols = head;
+            } else {
+                kind = head & ~LONG_HEADER;
+                rows = buf.getShort() & 0xffff;
+                cols = buf.getShort() & 0xffff;
+            }
+            Topology layout = board.topology();
+            if (layout.kind() != kind || layout.rows() != rows
+                || layout.cols() != cols) {
+                board.clear(layout(kind, rows, cols));
+            }
+            int numSquares = rows * cols;
+            for (int n = 0; n < numSquares; n += 2) {
+                int b = buf.get();
+                board.loadCell(n, cell(b >> 4 & 0xf));
+                if (n + 1 < numSquares) {
+                    board.loadCell(n + 1, cell(b & 0xf));
+                }
+            }
+            board.finishLoad();
+        } catch (BufferUnderflowException excp) {
+            throw new GameException("Encoded position is truncated.");
+        }
+    }
+
+    /** Return the text form of BOARD. */
+    static String toText(Board board) {
+        Topology layout = board.topology();
+        StringBuilder result =
+            new StringBuilder(layout.numSquares() + 16);
+        if (layout.isSquareGrid() && layout.rows() < LONG_HEADER) {
+            result.append(layout.rows());
+        } else {
+            result.append(KINDS.charAt(layout.kind())).append(layout.rows())
+                .append('x').append(layout.cols());
+        }
+        result.append('/');
+        for (int n = 0; n < layout.numSquares(); n += 1) {
+            result.append(Character.forDigit(code(Board.cellOf(board, n)), 16));
+        }
+        return result.toString();
+    }
+
+    /** Return a new Board whose contents have the text form TEXT. */
+    static Board fromText(String text) {
+        int slash = text.indexOf('/');
+        if (slash < 1) {
+            throw new GameException("Missing layout in position.");
+        }
+        String head = text.substring(0, slash);
+        Topology layout;
+        try {
+            int kind = KINDS.indexOf(head.charAt(0));
+            if (kind < 0) {
+                int N = Integer.parseInt(head);
+                layout = layout(Topology.GRID, N, N);
+            } else {
+                int x = head.indexOf('x');
+                layout = layout(kind, Integer.parseInt(head.substring(1, x)),
+                                Integer.parseInt(head.substring(x + 1)));
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException excp) {
+            throw error("Bad layout in position: %s", head);
+        }
+        if (text.length() - slash - 1 != layout.numSquares()) {
+            throw new GameException("Wrong number of squares in position.");
+        }
+        Board board = new Board(layout);
+        for (int n = 0; n < layout.numSquares(); n += 1) {
+            int code = Character.digit(text.charAt(slash + 1 + n), 16);
+            if (code < 0) {
+                throw new GameException("Bad square in position.");
+            }
+            board.loadCell(n, cell(code));
+        }
+        board.finishLoad();
+        return board;
+    }
+
+    /** Return the number of bytes in the header for a layout of the
+     *  given KIND with ROWS rows and COLS columns. */
+    private static int headerLength(int kind, int rows, int cols) {
+        return kind == Topology.GRID && rows == cols && rows < LONG_HEADER
+            ? 1 : 5;
+    }
+
+    /** Read the layout from the header at the position of BUF, advancing
+     *  BUF past it. */
+    private static Topology readLayout(ByteBuffer buf) {
+        try {
+            int head = buf.get() & 0xff;
+            if ((head & LONG_HEADER) == 0) {
+                return layout(Topology.GRID, head, head);
+            }
+            int rows = buf.getShort() & 0xffff;
+            return layout(head & ~LONG_HEADER, rows, buf.getShort() & 0xffff);
+        } catch (BufferUnderflowException excp) {
+            throw new GameException("Encoded position is truncated.");
+        }
+    }
+
+    /** Return the layout of the given KIND with ROWS rows and COLS
+     *  columns. */
+    private static Topology layout(int kind, int rows, int cols) {
+        if ((long) rows * cols > MAX_SQUARES) {
+            throw new GameException("Encoded board is too large.");
+        }
+        switch (kind) {
+        case Topology.GRID:
+            return Topology.rectangle(rows, cols);
+        case Topology.TORUS:
+            return Topology.torus(rows, cols);
+        case Topology.HEX:
+            return Topology.hex(rows, cols);
+        default:
+            throw new GameException("Unknown layout in position.");
+        }
+    }
+
+    /** Return the 4-bit code for CELL, packed as for Board.pack.  Only
+     *  white squares with one spot and colored squares with 1 to
+     *  MAX_SPOTS spots have codes. */
+    private static int code(byte cell) {
+        int spots = Board.spotsOf(cell);
+        switch (Board.sideOf(cell)) {
+        case RED:
+            if (spots < 1 || spots > MAX_SPOTS) {
+                throw error("Cannot encode %d red spots.",
+                                spots);
+            }
+            return spots;
+        case BLUE:
+            if (spots < 1 || spots > MAX_SPOTS) {
+                throw error("Cannot encode %d blue spots.",
+                                spots);
+            }
+            return BLUE_CODE | spots;
+        default:
+            if (spots != 1) {
+                throw error("Cannot encode %d white spots.",
+                                spots);
+            }
+            return 0;
+        }
+    }
+
+    /** Return the packed square (as for Board.pack) with 4-bit code
+     *  CODE. */
+    private static byte cell(int code) {
+        if (code == 0) {
+            return Board.pack(WHITE, 1);
+        } else if (code == BLUE_CODE) {
+            throw new GameException("Bad square in position.");
+        } else if (code < BLUE_CODE) {
+            return Board.pack(RED, code);
+        } else {
+            return Board.pack(BLUE, code & MAX_SPOTS);
+        }
+    }
+
+    /** Flag marking a five-byte header. */
+    private static final int LONG_HEADER = 0x80;
+
+    /** Code bit marking a blue square. */
+    private static final int BLUE_CODE = 8;
+
+    /** Most spots a colored square may have when encoded. */
+    private static final int MAX_SPOTS = 7;
+
+    /** Most squares in a decoded board. */
+    private static final long MAX_SQUARES = (long) Defaults.MAX_LARGE_BOARD_SIZE
+        * Defaults.MAX_LARGE_BOARD_SIZE;
+
+    /** Letters for the layout kinds in the text form, indexed by kind. */
+    private static final String KINDS = "gth";
+}
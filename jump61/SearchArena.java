@@ -0,0 +1,95 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** Preallocated boards and move lists for a game-tree search, one of each
+ *  per ply, so that after the first search of a given layout and depth a
+ *  search allocates nothing.  Each thread has its own arena (see get).
+ *
+ *  A search may either play on board(0) alone, with makeMove and
+ *  unmakeMove, or copy and move, with child(ply, player, move), which
+ *  leaves board(ply) untouched.  Boards are made with Board.searchCopy,
+ *  so small boards are BitBoards.
+ *  @author Ethan Ikegami
+ */
+final class SearchArena {
+
+    /** Return the arena of the current thread. */
+    static SearchArena get() {
+        return ARENAS.get();
+    }
+
+    /** An arena with no boards yet. */
+    SearchArena() {
+        _boards = new SearchBoard[INITIAL_PLIES];
+        _moves = new MoveList[INITIAL_PLIES];
+    }
+
+    /** Prepare for a search starting at position ROOT, which becomes
+     *  board(0).  Boards of a previous search with ROOT's layout are
+     *  reused. */
+    void reset(SearchBoard root) {
+        Topology layout = root.topology();
+        if (layout != _layout) {
+            _layout = layout;
+            Arrays.fill(_boards, null);
+        }
+        board(0).copy(root);
+    }
+
+    /** Return the board for ply PLY (0 for the root), making it if this
+     *  is the first use of that ply since the layout changed.  Its
+     *  contents are whatever was last put there. */
+    SearchBoard board(int ply) {
+        grow(ply);
+        SearchBoard result = _boards[ply];
+        if (result == null) {
+            result = _boards[ply] = new Board(_layout).searchCopy();
+        }
+        return result;
+    }
+
+    /** Set board(PLY + 1) to board(PLY) after PLAYER moves at square
+     *  MOVE, and return it. */
+    SearchBoard child(int ply, Side player, int move) {
+        SearchBoard parent = board(ply);
+        SearchBoard result = board(ply + 1);
+        result.copy(parent);
+        result.makeMove(player, move);
+        return result;
+    }
+
+    /** Return the move list for ply PLY.  Its contents are whatever was
+     *  last put there. */
+    MoveList moves(int ply) {
+        grow(ply);
+        MoveList result = _moves[ply];
+        if (result == null) {
+            result = _moves[ply] = new MoveList();
+        }
+        return result;
+    }
+
+    /** Make room for ply PLY. */
+    private void grow(int ply) {
+        if (ply >= _boards.length) {
+            int size = Math.max(ply + 1, 2 * _boards.length);
+            _boards = Arrays.copyOf(_boards, size);
+            _moves = Arrays.copyOf(_moves, size);
+        }
+    }
+
+    /** Initial number of plies. */
+    private static final int INITIAL_PLIES = 16;
+
+    /** Arena of each thread. */
+    private static final ThreadLocal<SearchArena> ARENAS =
+        ThreadLocal.withInitial(SearchArena::new);
+
+    /** Layout of my boards. */
+    private Topology _layout;
+    /** Board for each ply, or null if not yet made. */
+    private SearchBoard[] _boards;
+    /** Move list for each ply, or null if not yet made. */
+    private MoveList[] _moves;
+}
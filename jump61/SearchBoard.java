@@ -0,0 +1,82 @@
+package jump61;
+
+/** The squares, moves and counts of a position that a game-tree search
+ *  uses, shared by Board and by BitBoard, which keeps small boards in
+ *  bit planes.  Squares are numbered as for Board.  Moves are made with
+ *  makeMove or replayMove and taken back with unmakeMove, and a cell
+ *  listener is told of every square they change.  Board.searchCopy
+ *  makes the kind that suits a given board.
+ *  @author Ethan Ikegami
+ */
+abstract class SearchBoard {
+
+    /** Return the layout of my squares. */
+    abstract Topology topology();
+
+    /** Return the number of squares. */
+    abstract int numSquares();
+
+    /** Return the contents of square #N. */
+    abstract Square get(int n);
+
+    /** Return the Side of the player who would be next to move. */
+    abstract Side whoseMove();
+
+    /** Return the winner of the current position, if the game is over,
+     *  and otherwise null. */
+    abstract Side getWinner();
+
+    /** Return true iff it would currently be legal for PLAYER to add a
+     *  spot to square #N. */
+    abstract boolean isLegal(Side player, int n);
+
+    /** Returns true iff PLAYER is allowed to move at this point. */
+    boolean isLegal(Side player) {
+        return whoseMove() == player && getWinner() == null;
+    }
+
+    /** Return the number of squares of given SIDE. */
+    abstract int numOfSide(Side side);
+
+    /** Return true iff square #N holds as many spots as it has
+     *  neighbors. */
+    abstract boolean isCritical(int n);
+
+    /** Return the number of critical squares of color SIDE. */
+    abstract int numCritical(Side side);
+
+    /** Return critical square #K of color SIDE, where 0 <= K <
+     *  numCritical(SIDE), in an arbitrary order. */
+    abstract int critical(Side side, int k);
+
+    /** Return the 64-bit Zobrist key of my contents, as for
+     *  Board.getHash. */
+    abstract long getHash();
+
+    /** Add a spot from PLAYER to square #N, with its cascade, recording
+     *  only what unmakeMove needs.  Assumes isLegal(PLAYER, N). */
+    abstract void makeMove(Side player, int n);
+
+    /** Make a move whose outcome is already known, as for makeMove: set
+     *  each square SQUARES[k] to the packed contents CELLS[k]. */
+    abstract void replayMove(int[] squares, byte[] cells);
+
+    /** Revert the last makeMove or replayMove. */
+    abstract void unmakeMove();
+
+    /** Return the number of times a square jumped during the last
+     *  move. */
+    abstract int lastJumps();
+
+    /** Set my contents to those of BOARD, taking its layout and
+     *  clearing my record of moves. */
+    abstract void copy(SearchBoard board);
+
+    /** Have LISTENER (if not null) told of every change to my squares
+     *  from now on, starting with a reload. */
+    abstract void setCellListener(CellListener listener);
+
+    /** Return my cell listener, or null if none. */
+    abstract CellListener cellListener();
+
+}
@@ -0,0 +1,99 @@
+package jump61;
+
+/** Time limits for an automated player, and the division of the time left
+ *  in a game among the moves it is still expected to make.  A limit of 0
+ *  means none.  Times are kept in nanoseconds, as from System.nanoTime.
+ *  @author Ethan Ikegami
+ */
+final class SearchClock {
+
+    /** A clock with no limits. */
+    SearchClock() {
+    }
+
+    /** Limit each move to MOVESECONDS and each game to GAMESECONDS (0 for
+     *  no limit), and start a new game.  Both must be finite. */
+    void setLimits(double moveSeconds, double gameSeconds) {
+        if (!Double.isFinite(moveSeconds) || !Double.isFinite(gameSeconds)) {
+            throw new GameException("time limits must be numbers of "
+                                    + "seconds");
+        }
+        if (moveSeconds < 0 || gameSeconds < 0) {
+            throw new GameException("time limits must not be negative");
+        }
+        _moveLimit = (long) (moveSeconds * 1e9);
+        _gameLimit = (long) (gameSeconds * 1e9);
+        startGame();
+    }
+
+    /** Return true iff I have any limit. */
+    boolean limited() {
+        return _moveLimit > 0 || _gameLimit > 0;
+    }
+
+    /** Restore the whole game limit, for a new game. */
+    void startGame() {
+        _remaining = _gameLimit;
+    }
+
+    /** Return the time left in the game, or Long.MAX_VALUE if it is not
+     *  limited. */
+    long remaining() {
+        return _gameLimit > 0 ? _remaining : Long.MAX_VALUE;
+    }
+
+    /** Start timing a move from position BOARD, and return the time (as
+     *  from System.nanoTime) by which the search for it should end, or
+     *  Long.MAX_VALUE if there is no limit.  The move gets its share of
+     *  the game's remaining time, as estimated by movesLeft, less a
+     *  margin for answering, and never more than the move limit. */
+    long startMove(Board board) {
+        _start = System.nanoTime();
+        long budget = Long.MAX_VALUE;
+        if (_moveLimit > 0) {
+            budget = _moveLimit;
+        }
+        if (_gameLimit > 0) {
+            budget = Math.min(budget, _remaining / movesLeft(board));
+        }
+        if (budget == Long.MAX_VALUE) {
+            return budget;
+        }
+        budget = Math.max(0, (long) (budget * SAFETY) - MARGIN);
+        return _start + budget;
+    }
+
+    /** Charge the time since the last startMove to the game. */
+    void endMove() {
+        if (_gameLimit > 0) {
+            _remaining = Math.max(0, _remaining
+                                  - (System.nanoTime() - _start));
+        }
+    }
+
+    /** Return an estimate of the number of moves the player to move in
+     *  BOARD has left in the game: its half of the moves until the board
+     *  holds two spots per square, and at least MIN_MOVES_LEFT. */
+    static int movesLeft(Board board) {
+        int spotsLeft = 2 * board.numSquares() - board.numPieces();
+        return Math.max(MIN_MOVES_LEFT, spotsLeft / 2);
+    }
+
+    /** Fewest moves assumed to remain in a game. */
+    static final int MIN_MOVES_LEFT = 8;
+
+    /** Fraction of a move's budget used for searching. */
+    private static final double SAFETY = 0.9;
+    /** Time reserved from each move's budget for answering, in
+     *  nanoseconds. */
+    private static final long MARGIN = 20_000_000L;
+
+    /** Limit per move, or 0 if none. */
+    private long _moveLimit;
+    /** Limit per game, or 0 if none. */
+    private long _gameLimit;
+    /** Time left in the current game. */
+    private long _remaining;
+    /** Start of the current move. */
+    private long _start;
+}
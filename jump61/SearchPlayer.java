@@ -0,0 +1,32 @@
+package jump61;
+
+/** An automated Player that finds its moves with its game's Searcher,
+ *  whose transposition table is kept from move to move.  Without time
+ *  limits, it searches Defaults.SEARCH_DEPTH plies; with them, as deep
+ *  as its SearchClock allows.
+ *  @author Ethan Ikegami
+ */
+class SearchPlayer extends Player {
+
+    /** A new player of GAME initially COLOR that searches for its
+     *  moves. */
+    SearchPlayer(Game game, Side color) {
+        super(game, color);
+    }
+
+    @Override
+    String getMove() {
+        Game game = getGame();
+        Board board = getBoard();
+        assert getSide() == board.whoseMove();
+        SearchClock clock = game.searchClock(getSide());
+        long deadline = clock.startMove(board);
+        int depth = clock.limited() ? Searcher.MAX_DEPTH
+            : Defaults.SEARCH_DEPTH;
+        int move = game.searcher().findMove(board, deadline, depth);
+        clock.endMove();
+        game.reportMove(board.row(move), board.col(move));
+        return String.format("%d %d", board.row(move), board.col(move));
+    }
+
+}
@@ -0,0 +1,547 @@
+package jump61;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** An alpha-beta game-tree search for automated players, deepened one ply
+ *  at a time until a deadline or a depth limit.  Each iteration starts
+ *  with the best move of the previous one and stores what it learns in a
+ *  TranspositionTable, and tries moves in the order given by MoveOrder.
+ *  An iteration cut short by the deadline is discarded, so the move
+ *  returned is always the best of the deepest completed iteration.  The
+ *  first iteration is always completed.
+ *
+ *  Scores are from the point of view of the player to move.  A won
+ *  position scores WINNING_VALUE less the number of plies to the win, so
+ *  that quicker wins are preferred.  Moves are made on one board of the
+ *  thread's SearchArena with SearchBoard.makeMove and unmakeMove, so
+ *  that a search allocates nothing once the arena has grown.  Positions at
+ *  the horizon are valued by an Evaluation that follows that board, so
+ *  that valuing one takes constant time, unless they are unstable: a
+ *  move there would set off a cascade into the opponent's critical
+ *  squares, and the static value would ignore the counter-cascade that
+ *  follows.  Those get a quiescence search that tries only such moves
+ *  (the player to move may always stand on the static value instead),
+ *  within limits of plies and positions set by setQuiescence.  A
+ *  Symmetry that also follows the board lets symmetric positions share
+ *  table entries (which are keyed by canonical key, with moves in
+ *  canonical orientation) and removes moves that a symmetry of the
+ *  position makes equivalent to others.
+ *
+ *  With more than one thread, the search is a "lazy" parallel search:
+ *  helper threads search the same tree at the same time, each on its own
+ *  arena, and speed the first thread's search by filling the shared
+ *  table.  The move returned is that of the first thread.
+ *  @author Ethan Ikegami
+ */
+final class Searcher {
+
+    /** Score of a position won by the player to move. */
+    static final int WINNING_VALUE = 1 << 24;
+
+    /** Largest depth searched. */
+    static final int MAX_DEPTH = TranspositionTable.MAX_DEPTH;
+
+    /** Largest number of plies of quiescence search past the depth. */
+    static final int MAX_QUIESCENCE_PLIES = 16;
+
+    /** Default number of plies of quiescence search past the depth (see
+     *  setQuiescence). */
+    static final int QUIESCENCE_PLIES = 8;
+
+    /** Default limit on the positions visited by quiescence searches in
+     *  each search and thread (see setQuiescence). */
+    static final long QUIESCENCE_NODES = 1 << 20;
+
+    /** A searcher recording its results in TABLE, using one thread. */
+    Searcher(TranspositionTable table) {
+        this(table, 1);
+    }
+
+    /** A searcher recording its results in TABLE, using THREADS
+     *  threads. */
+    Searcher(TranspositionTable table, int threads) {
+        if (threads < 1) {
+            throw new GameException("Need at least one thread.");
+        }
+        _table = table;
+        _workers = new Worker[threads];
+        for (int i = 0; i < threads; i += 1) {
+            _workers[i] = new Worker(i);
+        }
+        _helpers = new ForkJoinTask<?>[threads];
+        _pool = threads == 1 ? null : new ForkJoinPool(threads - 1);
+        _quiescencePlies = QUIESCENCE_PLIES;
+        _quiescenceNodes = QUIESCENCE_NODES;
+    }
+
+    /** Stop my helper threads.  I must not be used afterwards. */
+    void close() {
+        if (_pool != null) {
+            _pool.shutdown();
+        }
+    }
+
+    /** Return the number of threads I use. */
+    int threads() {
+        return _workers.length;
+    }
+
+    /** Return a move for the player to move in BOARD, searching at most
+     *  MAXDEPTH plies and, after the first, ending at DEADLINE (as from
+     *  System.nanoTime).  Returns -1 if that player has no legal move.
+     *  BOARD must not change during the search. */
+    int findMove(SearchBoard board, long deadline, int maxDepth) {
+        int depth = Math.min(maxDepth, MAX_DEPTH);
+        if (board.getWinner() != null || !hasMove(board)) {
+            for (Worker worker : _workers) {
+                worker.reset();
+            }
+            return -1;
+        }
+        _table.newSearch();
+        _abort = false;
+        for (int i = 1; i < _workers.length; i += 1) {
+            Worker helper = _workers[i];
+            _helpers[i] =
+                _pool.submit(() -> helper.iterate(board, deadline, depth));
+        }
+        Worker main = _workers[0];
+        main.iterate(board, deadline, depth);
+        _abort = true;
+        for (int i = 1; i < _workers.length; i += 1) {
+            _helpers[i].join();
+            _helpers[i] = null;
+        }
+        return main._bestMove;
+    }
+
+    /** Return true iff the player to move on BOARD has a legal move. */
+    private static boolean hasMove(SearchBoard board) {
+        Side player = board.whoseMove();
+        for (int n = 0; n < board.numSquares(); n += 1) {
+            if (board.isLegal(player, n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Make moves through CACHE, which replays moves whose outcomes it
+     *  has recorded, or directly if CACHE is null. */
+    void setCascadeCache(CascadeCache cache) {
+        _cache = cache;
+    }
+
+    /** Extend searches at the horizon by at most PLIES plies (at most
+     *  MAX_QUIESCENCE_PLIES) of quiescence search, visiting at most NODES
+     *  positions in each search in each thread, or not at all if PLIES
+     *  is 0. */
+    void setQuiescence(int plies, long nodes) {
+        if (plies < 0 || plies > MAX_QUIESCENCE_PLIES || nodes < 0) {
+            throw GameException.error("quiescence limits must be between 0 "
+                                      + "and %d plies", MAX_QUIESCENCE_PLIES);
+        }
+        _quiescencePlies = plies;
+        _quiescenceNodes = nodes;
+    }
+
+    /** Return the number of positions visited by quiescence searches in
+     *  the last search, in all threads (included in nodes()). */
+    long quiescenceNodes() {
+        long total;
+        total = 0;
+        for (Worker worker : _workers) {
+            total += worker._qnodes;
+        }
+        return total;
+    }
+
+    /** Return the number of quiescence positions in the last search whose
+     *  static value was enough for a cutoff, in all threads. */
+    long standPatCutoffs() {
+        long total;
+        total = 0;
+        for (Worker worker : _workers) {
+            total += worker._standPats;
+        }
+        return total;
+    }
+
+    /** Return the most plies past the horizon reached by quiescence
+     *  searches in the last search. */
+    int quiescenceDepth() {
+        int most;
+        most = 0;
+        for (Worker worker : _workers) {
+            most = Math.max(most, worker._qdepth);
+        }
+        return most;
+    }
+
+    /** Return the depth of the last completed iteration of the last
+     *  search. */
+    int depth() {
+        return _workers[0]._depth;
+    }
+
+    /** Return the score of the move returned by the last search. */
+    int score() {
+        return _workers[0]._score;
+    }
+
+    /** Return the number of positions visited by the last search, in all
+     *  threads. */
+    long nodes() {
+        long total;
+        total = 0;
+        for (Worker worker : _workers) {
+            total += worker._nodes;
+        }
+        return total;
+    }
+
+    /** Return the number of beta cutoffs in the last search, in all
+     *  threads. */
+    long cutoffs() {
+        long total;
+        total = 0;
+        for (Worker worker : _workers) {
+            total += worker._order.cutoffs();
+        }
+        return total;
+    }
+
+    /** Return the fraction of the beta cutoffs in the last search that
+     *  were caused by the first move tried, or 0 if there were none. */
+    double firstMoveCutoffRate() {
+        long first;
+        first = 0;
+        for (Worker worker : _workers) {
+            first += worker._order.firstCutoffs();
+        }
+        long cutoffs = cutoffs();
+        return cutoffs == 0 ? 0.0 : (double) first / cutoffs;
+    }
+
+    /** One thread's part of a search.  All workers search the whole tree
+     *  from the same position, sharing what they learn through the
+     *  table, which is what spreads them over different parts of it.
+     *  Helpers (all workers but the first) start every other one a ply
+     *  deeper, and stop when the first finishes. */
+    private class Worker {
+
+        /** Worker number I. */
+        Worker(int i) {
+            _helper = i > 0;
+            _skip = i % 2;
+        }
+
+        /** Search from BOARD with iterative deepening up to MAXDEPTH
+         *  plies, as for findMove. */
+        void iterate(SearchBoard board, long deadline, int maxDepth) {
+            SearchArena arena = SearchArena.get();
+            arena.reset(board);
+            _board = arena.board(0);
+            _arena = arena;
+            _board.setCellListener(_listener);
+            _order.newSearch(_board.numSquares());
+            _deadline = _helper ? deadline : Long.MAX_VALUE;
+            _stopped = false;
+            reset();
+            for (int depth = 1 + _skip; depth <= maxDepth; depth += 1) {
+                int score = search(0, depth, -INFINITY, INFINITY);
+                if (_stopped) {
+                    break;
+                }
+                _depth = depth;
+                _score = score;
+                _bestMove = _rootMove;
+                _deadline = deadline;
+                if (Math.abs(score) >= WINNING_VALUE - MAX_PLY
+                    || System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+            _board = null;
+        }
+
+        /** Clear the results and counts of my last search. */
+        void reset() {
+            _nodes = _qnodes = _standPats = 0;
+            _qdepth = 0;
+            _depth = 0;
+            _bestMove = _rootMove = -1;
+            _score = 0;
+        }
+
+        /** Return the value of the position on board(PLY) to the player
+         *  to move there, searching DEPTH more plies, given that only
+         *  values strictly between ALPHA and BETA matter.  At the root,
+         *  also sets _rootMove to the best move.  Returns 0 if the search
+         *  is stopped. */
+        private int search(int ply, int depth, int alpha, int beta) {
+            SearchBoard board = _board;
+            if (tick()) {
+                return 0;
+            }
+            if (board.getWinner() != null) {
+                return -WINNING_VALUE + ply;
+            }
+            if (depth == 0) {
+                if (_quiescencePlies == 0) {
+                    return _eval.value(board.whoseMove());
+                }
+                return quiesce(ply, 0, alpha, beta);
+            }
+
+            long key = _sym.canonicalKey();
+            long entry = _table.probe(key);
+            int hashMove = -1;
+            if (entry != 0) {
+                hashMove = TranspositionTable.move(entry);
+                if (hashMove >= 0) {
+                    hashMove = _sym.fromCanonical(hashMove);
+                }
+                if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                    int value =
+                        fromTable(TranspositionTable.score(entry), ply);
+                    switch (TranspositionTable.bound(entry)) {
+                    case TranspositionTable.EXACT:
+                        return value;
+                    case TranspositionTable.LOWER:
+                        if (value >= beta) {
+                            return value;
+                        }
+                        break;
+                    default:
+                        if (value <= alpha) {
+                            return value;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            Side player = board.whoseMove();
+            MoveList moves = _arena.moves(ply);
+            moves.generate(board, player);
+            _sym.reduce(moves);
+            _order.order(board, moves, ply, hashMove);
+
+            int alpha0 = alpha;
+            int best = -INFINITY, bestMove = -1;
+            for (int k = 0; k < moves.size(); k += 1) {
+                int move = moves.get(k);
+                if (_cache == null) {
+                    board.makeMove(player, move);
+                } else {
+                    _cache.makeMove(board, player, move);
+                }
+                int value = -search(ply + 1, depth - 1, -beta, -alpha);
+                board.unmakeMove();
+                if (_stopped) {
+                    return 0;
+                }
+                if (value > best) {
+                    best = value;
+                    bestMove = move;
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            _order.cutoff(moves, k, ply, depth);
+                            break;
+                        }
+                    }
+                }
+            }
+            int bound = best >= beta ? TranspositionTable.LOWER
+                : best > alpha0 ? TranspositionTable.EXACT
+                : TranspositionTable.UPPER;
+            _table.store(key, depth, bound, toTable(best, ply),
+                         bestMove < 0 ? -1 : _sym.toCanonical(bestMove));
+            if (ply == 0) {
+                _rootMove = bestMove;
+            }
+            return best;
+        }
+
+        /** Return the value of the position on board(PLY), QPLY plies
+         *  past the horizon, to the player to move there, given that only
+         *  values strictly between ALPHA and BETA matter, searching only
+         *  unstable moves (see unstable) until there are none.  The
+         *  player to move may instead stand on the static value.
+         *  Returns 0 if the search is stopped. */
+        private int quiesce(int ply, int qply, int alpha, int beta) {
+            SearchBoard board = _board;
+            if (qply > 0 && tick()) {
+                return 0;
+            }
+            if (board.getWinner() != null) {
+                return -WINNING_VALUE + ply;
+            }
+            _qnodes += 1;
+            _qdepth = Math.max(_qdepth, qply);
+            Side player = board.whoseMove();
+            int best = _eval.value(player);
+            if (qply >= _quiescencePlies || _qnodes > _quiescenceNodes) {
+                return best;
+            }
+            if (best >= beta) {
+                _standPats += 1;
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+            MoveList moves = _arena.moves(ply);
+            unstable(board, player, moves);
+            for (int k = 0; k < moves.size(); k += 1) {
+                int move = moves.get(k);
+                if (_cache == null) {
+                    board.makeMove(player, move);
+                } else {
+                    _cache.makeMove(board, player, move);
+                }
+                int value = -quiesce(ply + 1, qply + 1, -beta, -alpha);
+                board.unmakeMove();
+                if (_stopped) {
+                    return 0;
+                }
+                if (value > best) {
+                    best = value;
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        /** Set MOVES to the unstable moves of PLAYER on BOARD, those on
+         *  PLAYER's critical squares beside a critical square of the
+         *  opponent, which set off a cascade into the opponent's
+         *  squares.  They are sorted by the captures CascadeEstimator
+         *  expects, most first. */
+        private void unstable(SearchBoard board, Side player, MoveList moves) {
+            Topology topology = board.topology();
+            int[] offsets = topology.offsets(),
+                adjacency = topology.adjacency();
+            Side opponent = player.opposite();
+            moves.clear();
+            for (int k = 0; k < board.numCritical(player); k += 1) {
+                int n = board.critical(player, k);
+                for (int i = offsets[n]; i < offsets[n + 1]; i += 1) {
+                    int m = adjacency[i];
+                    if (board.isCritical(m)
+                        && board.get(m).getSide() == opponent) {
+                        moves.add(n);
+                        moves.setScore(moves.size() - 1,
+                                       _estimator.estimate(board, player, n));
+                        break;
+                    }
+                }
+            }
+            moves.sort();
+        }
+
+        /** Count a position, and return true iff the search is to stop,
+         *  checking the clock and the first worker occasionally. */
+        private boolean tick() {
+            _nodes += 1;
+            if ((_nodes & CLOCK_CHECK) == 0
+                && (System.nanoTime() >= _deadline
+                    || _helper && _abort)) {
+                _stopped = true;
+            }
+            return _stopped;
+        }
+
+        /** True iff I am a helper. */
+        private final boolean _helper;
+        /** Number of plies by which my iterations start deeper. */
+        private final int _skip;
+        /** Static evaluation of _board, kept up to date as it
+         *  changes. */
+        private final Evaluation _eval = new Evaluation();
+        /** Symmetries of _board. */
+        private final Symmetry _sym = new Symmetry();
+        /** Listener keeping _eval and _sym up to date. */
+        private final CellListener _listener = CellListener.both(_eval, _sym);
+        /** Forecasts captures of unstable moves. */
+        private final CascadeEstimator _estimator = new CascadeEstimator();
+        /** Order in which I try moves. */
+        private final MoveOrder _order = new MoveOrder();
+        /** Arena of the current search. */
+        private SearchArena _arena;
+        /** Board on which the current search makes its moves. */
+        private SearchBoard _board;
+        /** End of the current iteration, as from System.nanoTime. */
+        private long _deadline;
+        /** True iff the current iteration was stopped. */
+        private boolean _stopped;
+        /** Positions visited by the current search. */
+        private long _nodes;
+        /** Positions visited by quiescence searches, and stand-pat
+         *  cutoffs, in the current search. */
+        private long _qnodes, _standPats;
+        /** Most plies past the horizon reached in the current search. */
+        private int _qdepth;
+        /** Depth of the last completed iteration. */
+        private int _depth;
+        /** Best move and its score found by the last completed
+         *  iteration. */
+        private int _bestMove, _score;
+        /** Best move found by the last search of the root. */
+        private int _rootMove;
+    }
+
+    /** Return SCORE, a value at ply PLY, as recorded in the table, which
+     *  counts wins from the recorded position rather than the root. */
+    private static int toTable(int score, int ply) {
+        if (score >= WINNING_VALUE - MAX_PLY) {
+            return score + ply;
+        } else if (score <= -WINNING_VALUE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /** Return the value at ply PLY of SCORE, a value recorded in the
+     *  table. */
+    private static int fromTable(int score, int ply) {
+        if (score >= WINNING_VALUE - MAX_PLY) {
+            return score - ply;
+        } else if (score <= -WINNING_VALUE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /** Most plies from the root of any position searched. */
+    private static final int MAX_PLY = MAX_DEPTH + MAX_QUIESCENCE_PLIES;
+
+    /** A bound beyond any score. */
+    private static final int INFINITY = WINNING_VALUE + 1;
+
+    /** The deadline is checked once in every CLOCK_CHECK + 1 nodes. */
+    private static final int CLOCK_CHECK = 1023;
+
+    /** Table of results, kept between searches. */
+    private final TranspositionTable _table;
+    /** My workers, the first of which runs in the caller's thread. */
+    private final Worker[] _workers;
+    /** Running helpers, indexed like _workers. */
+    private final ForkJoinTask<?>[] _helpers;
+    /** Threads for helpers, or null if there are none. */
+    private final ForkJoinPool _pool;
+    /** Limits of quiescence searches (see setQuiescence). */
+    private int _quiescencePlies;
+    /** Limit on positions per quiescence search and thread. */
+    private long _quiescenceNodes;
+    /** Memo of move outcomes, or null. */
+    private volatile CascadeCache _cache;
+    /** True once the first worker has finished the current search. */
+    private volatile boolean _abort;
+}
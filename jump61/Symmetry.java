@@ -0,0 +1,190 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The symmetries of the position on a square board under the eight
+ *  rotations and reflections of the square, followed as a CellListener
+ *  of the board.  For each transformation I keep the Zobrist key (as for
+ *  Board.getHash) of the transformed position, up to date square by
+ *  square, so that the position's canonical key (the least of the eight)
+ *  and the transformations that leave it unchanged (those whose key is
+ *  the position's own) take constant time to find.  Boards that are not
+ *  square grids are treated as having no symmetries.
+ *
+ *  A search uses the canonical key to share table entries among
+ *  symmetric positions (translating moves with toCanonical and
+ *  fromCanonical), and reduce to try only one of each set of moves that
+ *  a symmetry of the position makes equivalent.  Symmetries are detected
+ *  by comparing keys, so a chance coincidence of 64-bit keys could make
+ *  a position appear symmetric when it is not.
+ *  @author Ethan Ikegami
+ */
+final class Symmetry implements CellListener {
+
+    /** Number of transformations of a square. */
+    static final int TRANSFORMS = 8;
+
+    /** A Symmetry following no board yet. */
+    Symmetry() {
+        _keys = new long[TRANSFORMS];
+    }
+
+    /** Return the number of transformations (including the identity)
+     *  that leave the position unchanged. */
+    int symmetries() {
+        int result;
+        result = 0;
+        for (int t = 0; t < _count; t += 1) {
+            if (_keys[t] == _keys[0]) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the key of the position, the same for all positions that
+     *  are transformations of one another. */
+    long canonicalKey() {
+        return _keys[canonical()];
+    }
+
+    /** Return the square to which transformation to the canonical
+     *  orientation (the one whose key is canonicalKey()) takes square
+     *  #N. */
+    int toCanonical(int n) {
+        return _forward[canonical()][n];
+    }
+
+    /** Return the square that transformation to the canonical orientation
+     *  takes to square #N: the inverse of toCanonical. */
+    int fromCanonical(int n) {
+        return _inverse[canonical()][n];
+    }
+
+    /** Remove from MOVES every move that some symmetry of the position
+     *  takes to a lower-numbered square, leaving one move of each set of
+     *  equivalent moves, in their original order. */
+    void reduce(MoveList moves) {
+        int fixed;
+        fixed = 0;
+        for (int t = 1; t < _count; t += 1) {
+            if (_keys[t] == _keys[0]) {
+                fixed |= 1 << t;
+            }
+        }
+        if (fixed == 0) {
+            return;
+        }
+        int size;
+        size = 0;
+        for (int k = 0; k < moves.size(); k += 1) {
+            int n = moves.get(k);
+            if (isLeast(n, fixed)) {
+                moves.set(size, n);
+                moves.setScore(size, moves.score(k));
+                size += 1;
+            }
+        }
+        moves.truncate(size);
+    }
+
+    @Override
+    public void cellChanged(int n, byte old, byte cell) {
+        for (int t = 0; t < _count; t += 1) {
+            int m = _forward[t][n];
+            _keys[t] ^= Board.key(m, old) ^ Board.key(m, cell);
+        }
+    }
+
+    @Override
+    public void reload(SearchBoard board) {
+        Topology topology = board.topology();
+        if (topology != _topology) {
+            _topology = topology;
+            if (topology.isSquareGrid()) {
+                _count = TRANSFORMS;
+                _forward = transforms(topology.size());
+            } else {
+                _count = 1;
+                _forward = new int[1][topology.numSquares()];
+                for (int n = 0; n < topology.numSquares(); n += 1) {
+                    _forward[0][n] = n;
+                }
+            }
+            _inverse = new int[_count][];
+            for (int t = 0; t < _count; t += 1) {
+                int[] forward = _forward[t];
+                int[] inverse = _inverse[t] = new int[forward.length];
+                for (int n = 0; n < forward.length; n += 1) {
+                    inverse[forward[n]] = n;
+                }
+            }
+        }
+        Arrays.fill(_keys, 0L);
+        for (int n = 0; n < topology.numSquares(); n += 1) {
+            Square sq = board.get(n);
+            byte cell = Board.pack(sq.getSide(), sq.getSpots());
+            for (int t = 0; t < _count; t += 1) {
+                _keys[t] ^= Board.key(_forward[t][n], cell);
+            }
+        }
+    }
+
+    /** Return true iff no transformation in the set FIXED (bit t for
+     *  transformation t) takes square #N to a lower-numbered square. */
+    private boolean isLeast(int n, int fixed) {
+        for (int t = 1; t < _count; t += 1) {
+            if ((fixed & (1 << t)) != 0 && _forward[t][n] < n) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the transformation taking the position to its canonical
+     *  orientation. */
+    private int canonical() {
+        int result;
+        result = 0;
+        for (int t = 1; t < _count; t += 1) {
+            if (_keys[t] < _keys[result]) {
+                result = t;
+            }
+        }
+        return result;
+    }
+
+    /** Return the eight transformations of an N x N board, each giving
+     *  the square to which it takes each square. */
+    private static int[][] transforms(int N) {
+        int[][] result = new int[TRANSFORMS][N * N];
+        for (int r = 0; r < N; r += 1) {
+            for (int c = 0; c < N; c += 1) {
+                int n = r * N + c, s = N - 1 - r, d = N - 1 - c;
+                result[0][n] = n;
+                result[1][n] = c * N + s;
+                result[2][n] = s * N + d;
+                result[3][n] = d * N + r;
+                result[4][n] = r * N + d;
+                result[5][n] = s * N + c;
+                result[6][n] = c * N + r;
+                result[7][n] = d * N + s;
+            }
+        }
+        return result;
+    }
+
+    /** Layout of the board I follow. */
+    private Topology _topology;
+    /** Number of transformations in use: TRANSFORMS, or 1 if the board
+     *  is not a square grid. */
+    private int _count;
+    /** _forward[t][n] is the square to which transformation t takes
+     *  square #n. */
+    private int[][] _forward;
+    /** _inverse[t] is the inverse of _forward[t]. */
+    private int[][] _inverse;
+    /** _keys[t] is the key of the position transformed by t.  _keys[0]
+     *  is the position's own key. */
+    private final long[] _keys;
+}
@@ -0,0 +1,290 @@
+package jump61;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Immutable neighbor and coordinate tables for the squares of a board.
+ *  The neighbors of square #n are adjacency()[offsets()[n]] through
+ *  adjacency()[offsets()[n + 1] - 1], and its degree (the number of
+ *  spots it may hold without being over-full) is degree(n).  Squares
+ *  are numbered in row-major order, so that the square at row r, column
+ *  c (1 <= r <= rows(), 1 <= c <= cols()) is #(r - 1) * cols() + c - 1.
+ *
+ *  The usual layout is the N x N grid, in which each square's neighbors
+ *  are those above, below and beside it.  Rectangular grids, toroidal
+ *  grids (whose edges wrap around, so that every square has four
+ *  neighbors) and hexagonal layouts (in which each even-numbered row is
+ *  shifted half a square right, giving up to six neighbors) are also
+ *  available; everything that follows the tables works on any of them.
+ *
+ *  Tables are built once per layout and shared by every board that uses
+ *  it, so none of the arrays returned here may be modified.  The shared
+ *  tables are only softly held, so that those for large boards that are
+ *  no longer in use may be reclaimed.
+ *  @author Ethan Ikegami
+ */
+final class Topology {
+
+    /** Kinds of layout. */
+    static final int GRID = 0, TORUS = 1, HEX = 2;
+
+    /** Return the tables for an N x N grid. */
+    static Topology grid(int N) {
+        return get(GRID, N, N);
+    }
+
+    /** Return the tables for a grid of ROWS rows and COLS columns. */
+    static Topology rectangle(int rows, int cols) {
+        return get(GRID, rows, cols);
+    }
+
+    /** Return the tables for a grid of ROWS rows and COLS columns whose
+     *  top and bottom rows and whose left and right columns are
+     *  adjacent.  ROWS and COLS must be at least 3. */
+    static Topology torus(int rows, int cols) {
+        if (rows < 3 || cols < 3) {
+            throw new GameException("A torus needs at least 3 rows "
+                                    + "and columns.");
+        }
+        return get(TORUS, rows, cols);
+    }
+
+    /** Return the tables for a hexagonal layout of ROWS rows and COLS
+     *  columns, in which each square touches two squares in each
+     *  neighboring row, and rows 2, 4, ... are shifted to the right. */
+    static Topology hex(int rows, int cols) {
+        return get(HEX, rows, cols);
+    }
+
+    /** Return the tables of the given KIND for ROWS rows and COLS
+     *  columns, building them if needed.  Concurrent callers asking for
+     *  the same layout get the same object, so layouts may be compared
+     *  with ==. */
+    private static Topology get(int kind, int rows, int cols) {
+        if (rows < 1 || cols < 1 || rows * cols < 2) {
+            throw new GameException("Board must have at least 2 squares.");
+        }
+        long key = (long) kind << 42 | (long) rows << 21 | cols;
+        SoftReference<Topology> ref = TABLES.get(key);
+        Topology result = ref == null ? null : ref.get();
+        if (result != null) {
+            return result;
+        }
+        Topology[] made = new Topology[1];
+        TABLES.compute(key, (k, old) -> {
+            made[0] = old == null ? null : old.get();
+            if (made[0] != null) {
+                return old;
+            }
+            made[0] = new Topology(kind, rows, cols);
+            return new SoftReference<>(made[0]);
+        });
+        return made[0];
+    }
+
+    /** The tables of the given KIND for ROWS rows and COLS columns. */
+    private Topology(int kind, int rows, int cols) {
+        int numSquares = rows * cols;
+        _kind = kind;
+        _rows = rows;
+        _cols = cols;
+        _degree = new int[numSquares];
+        _row = new int[numSquares];
+        _col = new int[numSquares];
+        _offsets = new int[numSquares + 1];
+        int[] adj = new int[(kind == HEX ? 6 : 4) * numSquares];
+        int k;
+        k = 0;
+        for (int n = 0; n < numSquares; n += 1) {
+            int r = n / cols, c = n % cols;
+            _row[n] = r + 1;
+            _col[n] = c + 1;
+            _offsets[n] = k;
+            switch (kind) {
+            case TORUS:
+                adj[k++] = r * cols + (c + cols - 1) % cols;
+                adj[k++] = r * cols + (c + 1) % cols;
+                adj[k++] = (r + rows - 1) % rows * cols + c;
+                adj[k++] = (r + 1) % rows * cols + c;
+                break;
+            case HEX:
+                k = addHex(adj, k, r, c);
+                break;
+            default:
+                k = addGrid(adj, k, n, r, c);
+                break;
+            }
+            _degree[n] = k - _offsets[n];
+        }
+        _offsets[numSquares] = k;
+        _adjacency = Arrays.copyOf(adj, k);
+    }
+
+    /** Append the grid neighbors of square #N, at row R, column C
+     *  (numbered from 0), to ADJ starting at K.  Returns the new end of
+     *  ADJ. */
+    private int addGrid(int[] adj, int k, int n, int r, int c) {
+        boolean west = c > 0, east = c < _cols - 1,
+            north = r > 0, south = r < _rows - 1;
+        if (west && east || !(north && south)) {
+            k = addHorizontal(adj, k, n, west, east);
+            k = addVertical(adj, k, n, north, south);
+        } else {
+            k = addVertical(adj, k, n, north, south);
+            k = addHorizontal(adj, k, n, west, east);
+        }
+        return k;
+    }
+
+    /** Append the hexagonal neighbors of the square at row R, column C
+     *  (numbered from 0) to ADJ starting at K.  Returns the new end of
+     *  ADJ. */
+    private int addHex(int[] adj, int k, int r, int c) {
+        int shift = r % 2;
+        k = addIfPresent(adj, k, r, c - 1);
+        k = addIfPresent(adj, k, r, c + 1);
+        for (int dr = -1; dr <= 1; dr += 2) {
+            k = addIfPresent(adj, k, r + dr, c - 1 + shift);
+            k = addIfPresent(adj, k, r + dr, c + shift);
+        }
+        return k;
+    }
+
+    /** Append the square at row R, column C (numbered from 0) to ADJ at
+     *  K if there is such a square.  Returns the new end of ADJ. */
+    private int addIfPresent(int[] adj, int k, int r, int c) {
+        if (0 <= r && r < _rows && 0 <= c && c < _cols) {
+            adj[k++] = r * _cols + c;
+        }
+        return k;
+    }
+
+    /** Append the neighbors of square #N to its west and east (if WEST
+     *  and EAST) to ADJ starting at K.  Returns the new end of ADJ. */
+    private static int addHorizontal(int[] adj, int k, int n,
+                                     boolean west, boolean east) {
+        if (west) {
+            adj[k++] = n - 1;
+        }
+        if (east) {
+            adj[k++] = n + 1;
+        }
+        return k;
+    }
+
+    /** Append the neighbors of square #N to its north and south (if
+     *  NORTH and SOUTH) to ADJ starting at K.  Returns the new end of
+     *  ADJ. */
+    private int addVertical(int[] adj, int k, int n,
+                            boolean north, boolean south) {
+        if (north) {
+            adj[k++] = n - _cols;
+        }
+        if (south) {
+            adj[k++] = n + _cols;
+        }
+        return k;
+    }
+
+    /** Return my kind of layout: GRID, TORUS or HEX. */
+    int kind() {
+        return _kind;
+    }
+
+    /** Return true iff I am an N x N grid, as used by the game. */
+    boolean isSquareGrid() {
+        return _kind == GRID && _rows == _cols;
+    }
+
+    /** Return the number of rows. */
+    int rows() {
+        return _rows;
+    }
+
+    /** Return the number of columns. */
+    int cols() {
+        return _cols;
+    }
+
+    /** Return the number of columns, which for a square board is also
+     *  the number of rows. */
+    int size() {
+        return _cols;
+    }
+
+    /** Return the number of squares. */
+    int numSquares() {
+        return _degree.length;
+    }
+
+    /** Return the number of neighbors of square #N. */
+    int degree(int n) {
+        return _degree[n];
+    }
+
+    /** Return the row number (1 <= row <= rows()) of square #N. */
+    int row(int n) {
+        return _row[n];
+    }
+
+    /** Return the column number (1 <= col <= cols()) of square #N. */
+    int col(int n) {
+        return _col[n];
+    }
+
+    /** Return the number of neighbors of every square, indexed by square
+     *  number. */
+    int[] degrees() {
+        return _degree;
+    }
+
+    /** Return the degrees() as bytes, for code that processes many
+     *  squares at once. */
+    byte[] capacities() {
+        byte[] result = _capacities;
+        if (result == null) {
+            result = new byte[_degree.length];
+            for (int n = 0; n < result.length; n += 1) {
+                result[n] = (byte) _degree[n];
+            }
+            _capacities = result;
+        }
+        return result;
+    }
+
+    /** Return the start of each square's neighbors in adjacency(),
+     *  followed by the length of adjacency(). */
+    int[] offsets() {
+        return _offsets;
+    }
+
+    /** Return the neighbors of all squares, in square order. */
+    int[] adjacency() {
+        return _adjacency;
+    }
+
+    /** Tables built so far, indexed by kind, rows and columns. */
+    private static final ConcurrentHashMap<Long, SoftReference<Topology>>
+        TABLES = new ConcurrentHashMap<>();
+
+    /** Kind of layout. */
+    private final int _kind;
+    /** Number of rows. */
+    private final int _rows;
+    /** Number of columns. */
+    private final int _cols;
+    /** Number of neighbors of each square. */
+    private final int[] _degree;
+    /** _degree as bytes, built when first needed.  Racing threads may
+     *  each build one; they are identical. */
+    private volatile byte[] _capacities;
+    /** Row number of each square. */
+    private final int[] _row;
+    /** Column number of each square. */
+    private final int[] _col;
+    /** Start of each square's neighbors in _adjacency. */
+    private final int[] _offsets;
+    /** Neighbors of every square, concatenated in square order. */
+    private final int[] _adjacency;
+}
@@ -0,0 +1,183 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** A fixed-size table of search results, indexed by the 64-bit hash of a
+ *  position (Board.getHash), shared without locks by any number of
+ *  searching threads.
+ *
+ *  Each entry records the depth to which its position was searched, the
+ *  kind of bound its score is (EXACT, LOWER or UPPER), the score and the
+ *  best move found, packed into one long.  Entries live in buckets of
+ *  two: the first slot keeps the deepest result of the current search
+ *  (see newSearch), and the second takes whatever the first declines.
+ *  Each slot holds its data and the data XORed with its key.  A probe
+ *  accepts a slot only if the two agree with the probed key, so that an
+ *  entry torn by concurrent stores is simply missed rather than
+ *  misread.
+ *
+ *  Probes return the packed data (0 for a miss), which is unpacked with
+ *  depth, bound, score and move, so that a search allocates nothing.
+ *  @author Ethan Ikegami
+ */
+final class TranspositionTable {
+
+    /** Bound types: the score is exact, at least the true value, or at
+     *  most the true value. */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Largest depth that may be recorded.  Deeper results are recorded
+     *  as this depth. */
+    static final int MAX_DEPTH = 63;
+
+    /** Largest size in megabytes. */
+    static final int MAX_MEGABYTES = 4096;
+
+    /** A table occupying about MEGABYTES megabytes (at least one
+     *  bucket). */
+    TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    /** Replace my contents with an empty table of about MEGABYTES
+     *  megabytes, rounded down to a power of two number of buckets.  No
+     *  search may be using me meanwhile. */
+    void resize(int megabytes) {
+        if (megabytes < 0 || megabytes > MAX_MEGABYTES) {
+            throw GameException.error("table size must be between 0 and %d",
+                                      MAX_MEGABYTES);
+        }
+        long buckets = Math.max(1L, ((long) megabytes << 20) / BUCKET_BYTES);
+        _slots = new long[(int) Long.highestOneBit(buckets) * BUCKET_LONGS];
+        _age = 0;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_slots, 0L);
+        _age = 0;
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _slots.length / 2;
+    }
+
+    /** Mark the start of a new search (typically, for a new move), so
+     *  that deep entries of earlier searches no longer block newer
+     *  ones. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Return the packed entry for the position with hash KEY, or 0 if
+     *  there is none. */
+    long probe(long key) {
+        long[] slots = _slots;
+        int k = bucket(key, slots);
+        for (int i = 0; i < BUCKET_LONGS; i += 2) {
+            long data = slots[k + i + 1];
+            if ((slots[k + i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /** Record that the position with hash KEY, searched to DEPTH, has a
+     *  score of SCORE with bound type BOUND, and best move MOVE (a square
+     *  number, or -1 if none). */
+    void store(long key, int depth, int bound, int score, int move) {
+        long[] slots = _slots;
+        int k = bucket(key, slots);
+        long data = pack(depth, bound, score, move);
+        long first = slots[k + 1];
+        boolean same = (slots[k] ^ first) == key;
+        if (same || first == 0 || age(first) != _age
+            || depth(data) >= depth(first)) {
+            if (same && move < 0) {
+                data |= first & (MOVE_MASK << MOVE_SHIFT);
+            }
+            slots[k] = key ^ data;
+            slots[k + 1] = data;
+        } else {
+            slots[k + 2] = key ^ data;
+            slots[k + 3] = data;
+        }
+    }
+
+    /** Return the depth recorded in entry DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    /** Return the bound type recorded in entry DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score recorded in entry DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the best move recorded in entry DATA, or -1 if none. */
+    static int move(long data) {
+        return (int) ((data >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /** Return the entry for DEPTH, BOUND, SCORE and MOVE in the current
+     *  search. */
+    private long pack(int depth, int bound, int score, int move) {
+        if (bound < EXACT || bound > UPPER) {
+            throw GameException.error("bad bound type: %d", bound);
+        }
+        depth = Math.max(0, Math.min(depth, MAX_DEPTH));
+        return (long) _age << AGE_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) depth << DEPTH_SHIFT
+            | ((long) (move + 1) & MOVE_MASK) << MOVE_SHIFT
+            | (score & 0xffffffffL);
+    }
+
+    /** Return the search number recorded in entry DATA. */
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** Return the index in SLOTS of the bucket for KEY. */
+    private int bucket(long key, long[] slots) {
+        return (int) ((key ^ key >>> 32) & (slots.length / BUCKET_LONGS - 1))
+            * BUCKET_LONGS;
+    }
+
+    /** Number of bits in each field of an entry.  Moves are stored plus
+     *  one, and must fit squares of the largest boards. */
+    private static final int
+        MOVE_BITS = 22, DEPTH_BITS = 6, BOUND_BITS = 2, AGE_BITS = 2;
+
+    /** Position of each field of an entry.  The score takes the low 32
+     *  bits. */
+    private static final int
+        MOVE_SHIFT = 32,
+        DEPTH_SHIFT = MOVE_SHIFT + MOVE_BITS,
+        BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS,
+        AGE_SHIFT = BOUND_SHIFT + BOUND_BITS;
+
+    /** Mask for the move, after shifting. */
+    private static final long MOVE_MASK = (1L << MOVE_BITS) - 1;
+    /** Mask for the bound type, after shifting. */
+    private static final int BOUND_MASK = (1 << BOUND_BITS) - 1;
+    /** Mask for the search number, after shifting. */
+    private static final int AGE_MASK = (1 << AGE_BITS) - 1;
+
+    /** Number of longs, and of bytes, in a bucket. */
+    private static final int BUCKET_LONGS = 4, BUCKET_BYTES = 8 * BUCKET_LONGS;
+
+    /** The buckets, each a depth-preferred slot followed by an
+     *  always-replaced slot, each of those a check word (key XOR data)
+     *  followed by the data. */
+    private volatile long[] _slots;
+    /** Number of the current search, modulo 1 << AGE_BITS. */
+    private volatile int _age;
+}
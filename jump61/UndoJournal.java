@@ -0,0 +1,208 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The undo history of a Board.  Rather than copying the whole board,
+ *  each move (frame) records the color and spot counters at its start
+ *  plus the previous packed contents of each square it changed, once per
+ *  square no matter how often a cascade revisits it.  Undoing a move
+ *  therefore costs time proportional to the number of squares it touched.
+ *
+ *  A journal may be given a limit, in which case only the most recent
+ *  moves (at least the limit and at most twice the limit) are kept.
+ *  @author Ethan Ikegami
+ */
+final class UndoJournal {
+
+    /** An empty, unlimited journal for a board of NUMSQUARES squares.
+     *  Storage is allocated when the first move is recorded, so that
+     *  boards that are never changed (such as views) pay nothing. */
+    UndoJournal(int numSquares) {
+        _numSquares = numSquares;
+        _current = 1;
+        _squares = new int[0];
+        _cells = new byte[0];
+        _frames = new int[0];
+    }
+
+    /** Return true iff there is no move to undo. */
+    boolean isEmpty() {
+        return _numFrames == 0;
+    }
+
+    /** Return the number of moves that may be undone. */
+    int size() {
+        return _numFrames;
+    }
+
+    /** Discard all recorded moves. */
+    void clear() {
+        _numFrames = 0;
+        _numEntries = 0;
+        nextStamp();
+    }
+
+    /** Keep at least the last LIMIT moves and no more than twice that.  A
+     *  LIMIT of 0 keeps every move. */
+    void setLimit(int limit) {
+        if (limit < 0) {
+            throw new GameException("Undo limit must not be negative.");
+        }
+        _limit = limit;
+        trim();
+    }
+
+    /** Return the limit set by setLimit. */
+    int getLimit() {
+        return _limit;
+    }
+
+    /** Begin a new move, recording the counts WHITE, RED, BLUE and SPOTS
+     *  in effect before it. */
+    void mark(int white, int red, int blue, int spots) {
+        if ((_numFrames + 1) * FRAME > _frames.length) {
+            _frames = Arrays.copyOf(_frames,
+                                    Math.max(INITIAL_FRAMES * FRAME,
+                                             2 * _frames.length));
+        }
+        if (_stamp == null) {
+            _stamp = new int[_numSquares];
+        }
+        int f = _numFrames * FRAME;
+        _frames[f] = _numEntries;
+        _frames[f + 1] = white;
+        _frames[f + 2] = red;
+        _frames[f + 3] = blue;
+        _frames[f + 4] = spots;
+        _numFrames += 1;
+        nextStamp();
+        if (_limit > 0 && _numFrames > 2 * _limit) {
+            trim();
+        }
+    }
+
+    /** Record that square #SQ held packed contents OLDCELL before the
+     *  current move changed it.  Only the first change to each square
+     *  during a move is kept. */
+    void record(int sq, byte oldCell) {
+        if (_numFrames == 0 || _stamp[sq] == _current) {
+            return;
+        }
+        _stamp[sq] = _current;
+        if (_numEntries == _squares.length) {
+            int size = Math.max(INITIAL_ENTRIES, 2 * _numEntries);
+            _squares = Arrays.copyOf(_squares, size);
+            _cells = Arrays.copyOf(_cells, size);
+        }
+        _squares[_numEntries] = sq;
+        _cells[_numEntries] = oldCell;
+        _numEntries += 1;
+    }
+
+    /** Return the index of the first change recorded for the last move. */
+    int start() {
+        return _frames[(_numFrames - 1) * FRAME];
+    }
+
+    /** Return one past the index of the last recorded change. */
+    int end() {
+        return _numEntries;
+    }
+
+    /** Return the square changed by recorded change #K. */
+    int square(int k) {
+        return _squares[k];
+    }
+
+    /** Return the packed contents of square(K) before change #K. */
+    byte cell(int k) {
+        return _cells[k];
+    }
+
+    /** Return the number of white squares before the last move. */
+    int white() {
+        return _frames[(_numFrames - 1) * FRAME + 1];
+    }
+
+    /** Return the number of red squares before the last move. */
+    int red() {
+        return _frames[(_numFrames - 1) * FRAME + 2];
+    }
+
+    /** Return the number of blue squares before the last move. */
+    int blue() {
+        return _frames[(_numFrames - 1) * FRAME + 3];
+    }
+
+    /** Return the number of spots before the last move. */
+    int spots() {
+        return _frames[(_numFrames - 1) * FRAME + 4];
+    }
+
+    /** Discard the last move and its recorded changes. */
+    void pop() {
+        _numEntries = start();
+        _numFrames -= 1;
+        nextStamp();
+    }
+
+    /** Start a new generation of square stamps, so that every square
+     *  may be recorded again. */
+    private void nextStamp() {
+        _current += 1;
+        if (_current == 0 && _stamp != null) {
+            Arrays.fill(_stamp, 0);
+            _current = 1;
+        }
+    }
+
+    /** Drop the oldest moves beyond the limit, if any. */
+    private void trim() {
+        if (_limit == 0 || _numFrames <= _limit) {
+            return;
+        }
+        int drop = _numFrames - _limit;
+        int base = _frames[drop * FRAME];
+        System.arraycopy(_squares, base, _squares, 0, _numEntries - base);
+        System.arraycopy(_cells, base, _cells, 0, _numEntries - base);
+        _numEntries -= base;
+        System.arraycopy(_frames, drop * FRAME, _frames, 0, _limit * FRAME);
+        _numFrames = _limit;
+        for (int f = 0; f < _numFrames * FRAME; f += FRAME) {
+            _frames[f] -= base;
+        }
+    }
+
+    /** Number of ints describing one move in _frames: the index of its
+     *  first change, followed by the white, red, blue and spot counts. */
+    private static final int FRAME = 5;
+
+    /** Initial capacity for recorded changes. */
+    private static final int INITIAL_ENTRIES = 64;
+
+    /** Initial capacity for moves. */
+    private static final int INITIAL_FRAMES = 16;
+
+    /** Squares changed, in the order first changed. */
+    private int[] _squares;
+    /** Previous packed contents of the squares in _squares. */
+    private byte[] _cells;
+    /** Number of recorded changes. */
+    private int _numEntries;
+
+    /** Descriptions of the recorded moves, FRAME ints apiece. */
+    private int[] _frames;
+    /** Number of recorded moves. */
+    private int _numFrames;
+
+    /** Maximum number of moves to keep, or 0 if unlimited. */
+    private int _limit;
+
+    /** Number of squares on my board. */
+    private final int _numSquares;
+    /** _stamp[n] == _current iff square #n has been recorded during the
+     *  current move.  Allocated with the first move. */
+    private int[] _stamp;
+    /** Stamp of the current move. */
+    private int _current;
+}
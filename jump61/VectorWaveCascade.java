@@ -0,0 +1,75 @@
+package jump61;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.NE;
+
+/** A WaveCascade whose sweeps compare and update a vector's worth of
+ *  packed squares at a time.  Needs the incubating jdk.incubator.vector
+ *  module (java --add-modules jdk.incubator.vector) both to compile and
+ *  to run, and so is only compiled by 'make vector'; WaveCascade.create
+ *  only uses this class when it loads.
+ *  @author Ethan Ikegami
+ */
+final class VectorWaveCascade extends WaveCascade {
+
+    @Override
+    boolean vectorized() {
+        return true;
+    }
+
+    @Override
+    int fire(byte[] cells, byte[] capacity, byte[] fire, int N,
+             int from, int to) {
+        ByteVector one = ByteVector.broadcast(SPECIES, (byte) 1),
+            none = ByteVector.zero(SPECIES);
+        int count;
+        int i;
+        count = 0;
+        for (i = from; i < from + SPECIES.loopBound(to - from);
+             i += SPECIES.length()) {
+            VectorMask<Byte> over =
+                ByteVector.fromArray(SPECIES, cells, i).and((byte) SPOTS)
+                .compare(GT, ByteVector.fromArray(SPECIES, capacity, i));
+            none.blend(one, over).intoArray(fire, N + i);
+            count += over.trueCount();
+        }
+        return count + fireRange(cells, capacity, fire, N, i, to);
+    }
+
+    @Override
+    int spread(byte[] cells, byte[] capacity, byte[] fire, byte[] hasWest,
+               byte[] hasEast, int N, byte playerBits, int from, int to) {
+        int others;
+        int i;
+        others = 0;
+        for (i = from; i < from + SPECIES.loopBound(to - from);
+             i += SPECIES.length()) {
+            int j = N + i;
+            ByteVector in = ByteVector.fromArray(SPECIES, fire, j - 1)
+                .and(ByteVector.fromArray(SPECIES, hasWest, i))
+                .add(ByteVector.fromArray(SPECIES, fire, j + 1)
+                     .and(ByteVector.fromArray(SPECIES, hasEast, i)))
+                .add(ByteVector.fromArray(SPECIES, fire, j - N))
+                .add(ByteVector.fromArray(SPECIES, fire, j + N));
+            ByteVector cell = ByteVector.fromArray(SPECIES, cells, i);
+            ByteVector spots = cell.and((byte) SPOTS)
+                .sub(ByteVector.fromArray(SPECIES, fire, j)
+                     .mul(ByteVector.fromArray(SPECIES, capacity, i)))
+                .add(in);
+            ByteVector side = cell.and((byte) ~SPOTS)
+                .blend(playerBits, in.compare(GT, (byte) 0));
+            side.or(spots).intoArray(cells, i);
+            others += side.compare(NE, playerBits).trueCount();
+        }
+        return others + spreadRange(cells, capacity, fire, hasWest, hasEast,
+                                    N, playerBits, i, to);
+    }
+
+    /** Vector shape used for all sweeps. */
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED;
+}
@@ -0,0 +1,167 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** Resolves a large cascade on a rectangular grid in synchronous waves: in
+ *  each wave, every over-full square jumps once, simultaneously.  Each
+ *  wave is two sweeps over the whole board (find the over-full squares,
+ *  then move the spots), which beats following individual squares once
+ *  most of a big board is involved.  Without a win, the final position
+ *  is the same as for Board's own worklist; with one, the winning
+ *  position may differ, as the rules allow.
+ *
+ *  This class does the sweeps with scalar loops.  VectorWaveCascade does
+ *  them with the incubating jdk.incubator.vector API; create() returns
+ *  one of those when that module is present.  It is left out of the
+ *  default build, and is built and tested by 'make vector'.
+ *  @author Ethan Ikegami
+ */
+class WaveCascade {
+
+    /** Return a vectorized WaveCascade if the jdk.incubator.vector module
+     *  is available, and a scalar one otherwise. */
+    static WaveCascade create() {
+        try {
+            return (WaveCascade) Class.forName("jump61.VectorWaveCascade")
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return new WaveCascade();
+        }
+    }
+
+    /** Return true iff I use vector instructions. */
+    boolean vectorized() {
+        return false;
+    }
+
+    /** Release any threads I hold.  I must not be used afterwards. */
+    void close() {
+    }
+
+    /** Perform waves of jumps on CELLS, the packed squares of a board
+     *  with topology TOPOLOGY, which must be a Topology.GRID, until no
+     *  square is over-full or every square belongs to PLAYER.  Every
+     *  square receiving spots is given to PLAYER.  Afterwards, jumps()
+     *  and waves() tell how much work was done. */
+    void resolve(byte[] cells, Topology topology, Side player) {
+        setSize(topology);
+        byte playerBits = Board.pack(player, 0);
+        byte[] capacity = topology.capacities();
+        _jumps = _waves = 0;
+        while (true) {
+            int fired = fire(cells, capacity, _fire, _width, 0, cells.length);
+            if (fired == 0) {
+                break;
+            }
+            _jumps += fired;
+            _waves += 1;
+            if (spread(cells, capacity, _fire, _hasWest, _hasEast, _width,
+                       playerBits, 0, cells.length) == 0) {
+                break;
+            }
+        }
+    }
+
+    /** Return the number of jumps made by the last resolve. */
+    int jumps() {
+        return _jumps;
+    }
+
+    /** Return the number of waves in the last resolve. */
+    int waves() {
+        return _waves;
+    }
+
+    /** Set FIRE[N + i] to 1 if square #i of CELLS holds more spots than
+     *  CAPACITY[i] allows and to 0 otherwise, for FROM <= i < TO, on a
+     *  board with rows N squares long.  Return the number of over-full
+     *  squares among them. */
+    int fire(byte[] cells, byte[] capacity, byte[] fire, int N,
+             int from, int to) {
+        return fireRange(cells, capacity, fire, N, from, to);
+    }
+
+    /** Move spots from every square #i of CELLS for which FIRE[N + i] is
+     *  1 to its neighbors, on a board with rows N squares long, updating
+     *  squares FROM <= i < TO and giving each of them that receives spots
+     *  the side whose packed bits are PLAYERBITS.  HASWEST[i] and
+     *  HASEAST[i] are 1 iff square #i has a neighbor in that direction.
+     *  Return the number of those squares that do not then belong to
+     *  that side.  Only squares in the range are written, so disjoint
+     *  ranges may be done at the same time. */
+    int spread(byte[] cells, byte[] capacity, byte[] fire, byte[] hasWest,
+               byte[] hasEast, int N, byte playerBits, int from, int to) {
+        return spreadRange(cells, capacity, fire, hasWest, hasEast, N,
+                           playerBits, from, to);
+    }
+
+    /** The scalar version of fire. */
+    static int fireRange(byte[] cells, byte[] capacity, byte[] fire, int N,
+                         int from, int to) {
+        int count;
+        count = 0;
+        for (int i = from; i < to; i += 1) {
+            int f = (cells[i] & SPOTS) > capacity[i] ? 1 : 0;
+            fire[N + i] = (byte) f;
+            count += f;
+        }
+        return count;
+    }
+
+    /** The scalar version of spread. */
+    static int spreadRange(byte[] cells, byte[] capacity, byte[] fire,
+                           byte[] hasWest, byte[] hasEast, int N,
+                           byte playerBits, int from, int to) {
+        int others;
+        others = 0;
+        for (int i = from; i < to; i += 1) {
+            int j = N + i;
+            int in = (fire[j - 1] & hasWest[i]) + (fire[j + 1] & hasEast[i])
+                + fire[j - N] + fire[j + N];
+            int cell = cells[i];
+            int spots = (cell & SPOTS) - fire[j] * capacity[i] + in;
+            int side = in > 0 ? playerBits : cell & ~SPOTS;
+            cells[i] = (byte) (side | spots);
+            if (side != playerBits) {
+                others += 1;
+            }
+        }
+        return others;
+    }
+
+    /** Prepare my work arrays for boards with topology TOPOLOGY. */
+    private void setSize(Topology topology) {
+        if (_topology == topology) {
+            return;
+        }
+        int N = topology.cols(), numSquares = topology.numSquares();
+        _topology = topology;
+        _width = N;
+        _fire = new byte[numSquares + 2 * N];
+        _hasWest = new byte[numSquares];
+        _hasEast = new byte[numSquares];
+        for (int r = 0; r < topology.rows(); r += 1) {
+            Arrays.fill(_hasWest, r * N + 1, r * N + N, (byte) 1);
+            Arrays.fill(_hasEast, r * N, r * N + N - 1, (byte) 1);
+        }
+    }
+
+    /** Mask for the spot count of a packed square. */
+    static final int SPOTS = 0x1f;
+
+    /** The layout for which my work arrays were made. */
+    private Topology _topology;
+    /** Number of columns of that layout. */
+    private int _width;
+    /** 1 for each over-full square in the current wave, preceded and
+     *  followed by _width zeros so that neighbors off the board read 0. */
+    private byte[] _fire;
+    /** 1 for each square with a neighbor to the west. */
+    private byte[] _hasWest;
+    /** 1 for each square with a neighbor to the east. */
+    private byte[] _hasEast;
+    /** Number of jumps in the last resolve. */
+    private int _jumps;
+    /** Number of waves in the last resolve. */
+    private int _waves;
+}